@@ -0,0 +1,344 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+
+/**
+ * Remembers how long operations took, keyed by an operation name, so that a progress indicator can estimate the
+ * progress of an operation that doesn't report any. See JBProgressIndicator.startEstimatedProgress.
+ * <p/>
+ * For each key, a moving average of the recorded durations is kept. Only the most recently used keys are kept, up to
+ * a maximum number. The history is stored in a small binary file. The file is read on a background thread the first
+ * time the history is accessed rather than when it is created, so no method ever waits for the file. Until the file
+ * has been read, no expected durations are known and recorded durations are held back. The file is written on a
+ * background thread whenever a duration is recorded.
+ * <p/>
+ * File format: int magic, int version, int entry count, then for each entry from least to most recently used the key
+ * as modified UTF-8 followed by the duration in milliseconds as a long.
+ */
+public class DurationHistory {
+    private final int FILE_MAGIC = 0x4a424448; // "JBDH"
+    private final int FILE_VERSION = 1;
+
+    // The weight given to a newly recorded duration in the moving average.
+    private final double NEW_DURATION_WEIGHT = .3;
+
+    private final String LOG_TAG = "DurationHistory";
+
+    private final File mFile;
+    private final int mMaxEntries;
+    private final LinkedHashMap<String, Long> mDurations;
+    private boolean mLoadStarted;
+    private boolean mLoaded;
+    private final ArrayList<String> mPendingKeys = new ArrayList<String>();
+    private final ArrayList<Long> mPendingDurations = new ArrayList<Long>();
+    private final ArrayList<Runnable> mLoadedRunnables = new ArrayList<Runnable>();
+    private boolean mSaveScheduled;
+    private final Object mSaveLock = new Object();
+
+
+    /**
+     * @param file       The file in which the history is stored. It is created when the first duration is recorded.
+     * @param maxEntries The maximum number of operation keys to remember. The least recently used key is dropped
+     *                   when the maximum is exceeded.
+     */
+    public DurationHistory(File file, int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be greater than zero: " + maxEntries);
+
+        mFile = file;
+        mMaxEntries = maxEntries;
+
+        mDurations = new LinkedHashMap<String, Long>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+
+    /**
+     * Returns true once the history file has been read. Starts reading it if that hasn't happened yet.
+     */
+    public synchronized boolean isLoaded() {
+        startLoad();
+        return mLoaded;
+    }
+
+
+    /**
+     * Runs a runnable once the history file has been read. If it has already been read, the runnable is run right
+     * away on the calling thread. Otherwise it is run on the thread that reads the file.
+     */
+    void runWhenLoaded(Runnable runnable) {
+        synchronized (this) {
+            startLoad();
+
+            if (!mLoaded) {
+                mLoadedRunnables.add(runnable);
+                return;
+            }
+        }
+
+        runnable.run();
+    }
+
+
+    /**
+     * Returns the expected duration of an operation.
+     *
+     * @param key The key of the operation.
+     * @return The expected duration in milliseconds or -1 if no duration has been recorded for the key or the history
+     * file has not been read yet.
+     */
+    public synchronized long getExpectedDuration(String key) {
+        startLoad();
+
+        if (!mLoaded)
+            return -1;
+
+        Long duration = mDurations.get(key);
+        return (duration != null) ? duration : -1;
+    }
+
+
+    /**
+     * Records how long an operation took. The expected duration of the operation moves towards this duration.
+     *
+     * @param key      The key of the operation.
+     * @param duration The duration in milliseconds.
+     */
+    public synchronized void recordDuration(String key, long duration) {
+        startLoad();
+
+        // Recorded durations are applied after the file has been read, so that they are averaged with the durations
+        // stored in it.
+        if (!mLoaded) {
+            mPendingKeys.add(key);
+            mPendingDurations.add(duration);
+            return;
+        }
+
+        applyDuration(key, duration);
+        scheduleSave();
+    }
+
+
+    /**
+     * Moves the expected duration of an operation towards a recorded duration. Must be called while holding the lock.
+     */
+    private void applyDuration(String key, long duration) {
+        Long expectedDuration = mDurations.get(key);
+
+        if (expectedDuration != null)
+            duration = (long) (expectedDuration + (duration - expectedDuration) * NEW_DURATION_WEIGHT);
+
+        mDurations.put(key, duration);
+    }
+
+
+    /**
+     * Writes the history file on a background thread unless a write is already pending. Must be called while holding
+     * the lock.
+     */
+    private void scheduleSave() {
+        if (!mSaveScheduled) {
+            mSaveScheduled = true;
+            new Thread(null, new SaveRunnable(), "DurationHistorySave_" + UUID.randomUUID()).start();
+        }
+    }
+
+
+    /**
+     * Starts reading the history file on a background thread, the first time it is called. Must be called while
+     * holding the lock.
+     */
+    private void startLoad() {
+        if (mLoadStarted)
+            return;
+
+        mLoadStarted = true;
+        new Thread(null, new LoadRunnable(), "DurationHistoryLoad_" + UUID.randomUUID()).start();
+    }
+
+
+    /**
+     * Reads the history file and then applies the durations that were recorded in the meantime.
+     */
+    private class LoadRunnable implements Runnable {
+        @Override
+        public void run() {
+            // The file is read without holding the lock, so that the history can be used while it is being read.
+            LinkedHashMap<String, Long> durations = new LinkedHashMap<String, Long>();
+            load(durations);
+
+            Runnable[] loadedRunnables;
+
+            synchronized (DurationHistory.this) {
+                mDurations.putAll(durations);
+
+                for (int i = 0; i < mPendingKeys.size(); i++)
+                    applyDuration(mPendingKeys.get(i), mPendingDurations.get(i));
+
+                if (!mPendingKeys.isEmpty())
+                    scheduleSave();
+
+                mPendingKeys.clear();
+                mPendingDurations.clear();
+                mLoaded = true;
+
+                loadedRunnables = mLoadedRunnables.toArray(new Runnable[mLoadedRunnables.size()]);
+                mLoadedRunnables.clear();
+            }
+
+            for (Runnable runnable : loadedRunnables)
+                runnable.run();
+        }
+    }
+
+
+    /**
+     * Reads the history file, from the least to the most recently used entry. A missing or unreadable file results in
+     * an empty history.
+     */
+    private void load(Map<String, Long> durations) {
+        if (!mFile.exists())
+            return;
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+
+            if ((in.readInt() != FILE_MAGIC) || (in.readInt() != FILE_VERSION))
+                return;
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                durations.put(key, in.readLong());
+            }
+        } catch (IOException ex) {
+            Log.e(LOG_TAG, "load: " + ex.toString());
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+
+    /**
+     * Writes the history file. Several recordings made in quick succession are written together.
+     */
+    private class SaveRunnable implements Runnable {
+        @Override
+        public void run() {
+            // Saves run one at a time so that an older snapshot can never overwrite a newer one.
+            synchronized (mSaveLock) {
+                save();
+            }
+        }
+
+
+        private void save() {
+            String[] keys;
+            long[] durations;
+
+            synchronized (DurationHistory.this) {
+                mSaveScheduled = false;
+
+                keys = new String[mDurations.size()];
+                durations = new long[keys.length];
+
+                int i = 0;
+
+                for (Map.Entry<String, Long> entry : mDurations.entrySet()) {
+                    keys[i] = entry.getKey();
+                    durations[i] = entry.getValue();
+                    i++;
+                }
+            }
+
+            // Write to a temporary file first so that a crash cannot leave a partially written history behind.
+            File tempFile = new File(mFile.getPath() + ".tmp");
+            DataOutputStream out = null;
+
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(keys.length);
+
+                for (int i = 0; i < keys.length; i++) {
+                    out.writeUTF(keys[i]);
+                    out.writeLong(durations[i]);
+                }
+
+                out.close();
+                out = null;
+
+                if (!tempFile.renameTo(mFile))
+                    throw new IOException("Cannot rename " + tempFile + " to " + mFile);
+            } catch (IOException ex) {
+                Log.e(LOG_TAG, "save: " + ex.toString());
+            } finally {
+                closeQuietly(out);
+            }
+        }
+    }
+
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            // Nothing can be done about it.
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+
+/**
+ * The motion of the two bars in indeterminate mode, expressed as a pure function of the elapsed time of a single
+ * repeating timeline.
+ * <p/>
+ * Each bar travels across the control in one bar duration. The first bar grows while it travels, the second one
+ * shrinks. The second bar starts when the first one has covered BAR3_START_FRACTION of its duration, and the first bar
+ * starts again when the second one has covered the same fraction of its own. The timeline therefore repeats every
+ * CYCLE_FACTOR bar durations. When the timeline starts, only the first bar is moving. The second bar stays parked
+ * until it is due to start for the first time.
+ * <p/>
+ * After calling evaluate, the fields hold the position and scale of each bar in the same terms as View.setX and
+ * View.setScaleX, where the bar is scaled around its center. drawBars draws the bars in those terms for code that
+ * renders them without views.
+ */
+final class IndeterminateTimeline {
+    /**
+     * The width of each bar as a fraction of the width of the control.
+     */
+    static final float BAR2_WIDTH_FACTOR = .5f;
+    static final float BAR3_WIDTH_FACTOR = .6f;
+
+    /**
+     * The scale that each bar reaches halfway through its travel.
+     */
+    static final float BAR2_SCALE = 1.4f;
+    static final float BAR3_SCALE = .2f;
+
+    static final float BAR3_START_FRACTION = .7f;
+    static final float CYCLE_FACTOR = 2 * BAR3_START_FRACTION;
+
+    float bar2Width;
+    float bar2X;
+    float bar2ScaleX;
+    float bar3Width;
+    float bar3X;
+    float bar3ScaleX;
+
+
+    /**
+     * Returns the duration of one cycle of the timeline.
+     *
+     * @param barDuration The time in milliseconds that it takes a bar to travel across the control. A duration below
+     *                    1 is treated as 1.
+     */
+    static long getCycleDuration(int barDuration) {
+        return (long) (Math.max(barDuration, 1) * CYCLE_FACTOR);
+    }
+
+
+    /**
+     * Computes the position and scale of both bars.
+     *
+     * @param playTime    The time in milliseconds since the timeline started. Values beyond one cycle wrap around.
+     *                    The time must not be wrapped by the caller because the first cycle differs from the rest.
+     * @param barDuration The time in milliseconds that it takes a bar to travel across the control. A duration below
+     *                    1 is treated as 1, which would otherwise result in NaN positions.
+     * @param width       The width of the control.
+     * @param rtl         True if the bars travel from right to left.
+     */
+    void evaluate(long playTime, int barDuration, int width, boolean rtl) {
+        barDuration = Math.max(barDuration, 1);
+
+        long cycle = getCycleDuration(barDuration);
+        long bar3Delay = (long) (barDuration * BAR3_START_FRACTION);
+        long time = playTime % cycle;
+        long bar3Time = (time + cycle - bar3Delay) % cycle;
+
+        bar2Width = width * BAR2_WIDTH_FACTOR;
+        bar3Width = width * BAR3_WIDTH_FACTOR;
+
+        float bar2Fraction = (float) time / barDuration;
+        float bar3Fraction = (playTime < bar3Delay) ? 1 : (float) bar3Time / barDuration;
+
+        bar2X = getX(bar2Fraction, bar2Width, BAR2_SCALE, width, rtl);
+        bar2ScaleX = getScaleX(bar2Fraction, BAR2_SCALE);
+        bar3X = getX(bar3Fraction, bar3Width, BAR3_SCALE, width, rtl);
+        bar3ScaleX = getScaleX(bar3Fraction, BAR3_SCALE);
+    }
+
+
+    /**
+     * Draws both bars at the position and scale computed by the last call to evaluate.
+     *
+     * @param canvas The canvas to draw into. Its horizontal coordinates must match the width passed to evaluate.
+     * @param top    The top edge of the bars.
+     * @param bottom The bottom edge of the bars.
+     * @param paint  The paint used for the bars.
+     */
+    void drawBars(Canvas canvas, float top, float bottom, Paint paint) {
+        drawBar(canvas, bar2X, bar2Width, bar2ScaleX, top, bottom, paint);
+        drawBar(canvas, bar3X, bar3Width, bar3ScaleX, top, bottom, paint);
+    }
+
+
+    /**
+     * Draws a single bar. The bar is scaled around its center, the same way that a view is scaled.
+     */
+    private static void drawBar(Canvas canvas, float x, float barWidth, float scaleX, float top, float bottom, Paint paint) {
+        float center = x + barWidth / 2;
+        float halfWidth = barWidth * scaleX / 2;
+
+        canvas.drawRect(center - halfWidth, top, center + halfWidth, bottom, paint);
+    }
+
+
+    /**
+     * Returns the position of a bar. A bar that is not travelling is placed just outside of the control on the side
+     * where it starts.
+     */
+    private static float getX(float fraction, float barWidth, float scale, int width, boolean rtl) {
+        float start = rtl ? width : -barWidth;
+
+        if (fraction >= 1)
+            return start;
+
+        // A growing bar has to travel further to leave the control completely.
+        float end;
+
+        if (rtl)
+            end = (scale < 1) ? -barWidth : -(barWidth * scale);
+        else
+            end = (scale < 1) ? width : width * scale;
+
+        return start + (end - start) * MaterialEasing.interpolate(MaterialEasing.FAST_OUT_SLOW_IN, fraction);
+    }
+
+
+    /**
+     * Returns the scale of a bar. The bar reaches its final scale halfway through its travel.
+     */
+    private static float getScaleX(float fraction, float scale) {
+        if (fraction >= 1)
+            return 1;
+
+        return 1 + (scale - 1) * MaterialEasing.interpolate(MaterialEasing.LINEAR_OUT_SLOW_IN, fraction * 2);
+    }
+}
@@ -27,24 +27,37 @@
 
 package info.johannblake.widgets.jbprogressindicatorlib;
 
-import android.animation.Keyframe;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
-import android.animation.PropertyValuesHolder;
-import android.animation.ValueAnimator;
+import android.animation.TimeAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.TextureView;
 import android.view.View;
 import android.view.ViewTreeObserver;
-import android.view.animation.LinearInterpolator;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
 
-import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -59,36 +72,80 @@ import java.util.UUID;
 public class JBProgressIndicator extends RelativeLayout {
     private final float ANIMATION_RATE_DETERMINATE_MODE = 1.5f; // milliseconds.
     private final int ANIMATION_RATE_INDETERMINATE_MODE = 800; // milliseconds.
+    private final long ACCESSIBILITY_EVENT_INTERVAL = 500; // milliseconds.
+    private final double ACCESSIBILITY_EVENT_THRESHOLD = 1; // percent.
+
+    // In estimated mode, the fraction of the range that is reached when the expected duration has elapsed. The rest
+    // is approached slowly if the operation takes longer than expected.
+    private final double ESTIMATED_MODE_EXPECTED_FRACTION = .9;
 
     private final String LOG_TAG = "JBProgressIndicator";
 
     private Context mContext;
-    private Integer mAnimatedBarColor;
-    private int mIndicatorType;
+    private volatile Integer mAnimatedBarColor;
+    private volatile int mIndicatorType;
     private float mAnimationRateDeterminateMode;
-    private int mAnimationRateIndeterminateMode;
-    private Thread mThreadAnimate;
-    private int mBgColor;
-    private int mAnimationRateMilliseconds;
-    private int mAnimationRateNanoseconds;
+    private volatile int mAnimationRateIndeterminateMode;
+    private volatile Thread mThreadAnimate;
+    private final Object mThreadLock = new Object();
+    private volatile int mTerminateGeneration;
+    private volatile int mBgColor;
+    private volatile int mAnimationRateMilliseconds;
+    private volatile int mAnimationRateNanoseconds;
     private LinearLayout mLLBar1;
     private LinearLayout mLLBar2;
     private LinearLayout mLLBar3;
     private boolean mCtlInitialized;
-    private Random mRandom = new Random();
-    private ObjectAnimator mObjAnimBar2;
-    private ObjectAnimator mObjAnimBar3;
-    private float mBar2StartThreshold = getStartingPercent();
-    private float mBar3StartThreshold = getStartingPercent();
-
-    private int mDeterminateBarWidth;
-    private boolean mTerminateProgress;
-
-    private double mDeterminateValue;
-    private double mDeterminateModeMaxValue = 100;
-    private double mDeterminateModeMinValue = 0;
-
-    private boolean mIndeterminateModeRTL;
+    private TimeAnimator mIndeterminateAnimator;
+    private long mIndeterminatePlayTime;
+    private final IndeterminateTimeline mIndeterminateTimeline = new IndeterminateTimeline();
+
+    private volatile int mDeterminateBarWidth;
+    private volatile boolean mTerminateProgress;
+
+    private volatile double mDeterminateValue;
+    private volatile double mDeterminateModeMaxValue = 100;
+    private volatile double mDeterminateModeMinValue = 0;
+
+    private volatile boolean mIndeterminateModeRTL;
+
+    private ProgressSource mProgressSource;
+
+    private final MilestoneIndex mMilestones = new MilestoneIndex();
+    private final Object mCompletionLock = new Object();
+    private OnCompletionListener mOnCompletionListener;
+    private Executor mOnCompletionExecutor;
+    private boolean mCompleted;
+
+    private AccessibilityManager mAccessibilityManager;
+    private long mAccessibilityEventInterval = ACCESSIBILITY_EVENT_INTERVAL;
+    private double mAccessibilityEventThreshold = ACCESSIBILITY_EVENT_THRESHOLD;
+    private final AtomicBoolean mAccessibilityEventScheduled = new AtomicBoolean();
+    private volatile long mLastAccessibilityEventTime;
+    private double mLastAccessibilityEventPercent = Double.NaN;
+
+    private DurationHistory mEstimateHistory;
+    private String mEstimateKey;
+    private long mEstimateStartTime;
+    private long mEstimatedDuration;
+    private int mEstimateGeneration;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private boolean mAttached;
+    private volatile boolean mVisibleOnScreen;
+    private final Object mVisibilityLock = new Object();
+    private final Rect mVisibleRect = new Rect();
+
+    private int mRenderMode;
+    private TextureView mTextureView;
+    private volatile TextureRenderer mTextureRenderer;
+    private volatile boolean mRenderInvalidated;
+    private int mRenderedBarWidth;
+    private long mRenderPlayTime;
+    private double mRenderCycles;
+    private volatile boolean mRenderTimelineReset;
+    private final Paint mRenderPaint = new Paint();
+    private final IndeterminateTimeline mRenderTimeline = new IndeterminateTimeline();
 
 
     public enum IndicatorTypes {
@@ -106,15 +163,51 @@ public class JBProgressIndicator extends RelativeLayout {
         }
     }
 
+    /**
+     * Notified when the value in determinate mode crosses a milestone.
+     */
+    public interface OnMilestoneListener {
+        /**
+         * @param progressIndicator The progress indicator whose value crossed the milestone.
+         * @param milestone         The value of the milestone.
+         * @param increasing        True if the value rose to or above the milestone, false if it dropped below it.
+         */
+        void onMilestone(JBProgressIndicator progressIndicator, double milestone, boolean increasing);
+    }
+
+    /**
+     * Notified when the value in determinate mode reaches the maximum value.
+     */
+    public interface OnCompletionListener {
+        void onCompletion(JBProgressIndicator progressIndicator);
+    }
+
+    public enum RenderModes {
+        VIEW(0),
+        TEXTURE(1);
+
+        private final int mValue;
+
+        private RenderModes(int val) {
+            mValue = val;
+        }
+
+        public int getValue() {
+            return mValue;
+        }
+    }
+
     public JBProgressIndicator(Context context) {
         super(context);
         mContext = context;
+        initAccessibility();
     }
 
     public JBProgressIndicator(Context context, AttributeSet attrs) {
         super(context, attrs);
 
         mContext = context;
+        initAccessibility();
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.JBProgressIndicator, 0, 0);
 
         // Get the type of progress indicator.
@@ -149,6 +242,9 @@ public class JBProgressIndicator extends RelativeLayout {
         // Get the animation rate for indeterminate mode.
         mAnimationRateIndeterminateMode = a.getInt(R.styleable.JBProgressIndicator_animationRateIndeterminateMode, ANIMATION_RATE_INDETERMINATE_MODE);
 
+        // Get the way the bars are rendered.
+        mRenderMode = a.getInt(R.styleable.JBProgressIndicator_renderMode, RenderModes.VIEW.getValue());
+
         a.recycle();
 
         getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
@@ -161,6 +257,7 @@ public class JBProgressIndicator extends RelativeLayout {
                         return;
 
                     addControls();
+                    applyRenderMode();
 
                     mCtlInitialized = true;
                 }
@@ -175,13 +272,145 @@ public class JBProgressIndicator extends RelativeLayout {
 
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        mAttached = true;
+        getViewTreeObserver().addOnScrollChangedListener(visibilityScrollListener);
+        getViewTreeObserver().addOnGlobalLayoutListener(visibilityLayoutListener);
+        updateVisibleOnScreen();
+    }
+
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(visibilityScrollListener);
+        getViewTreeObserver().removeOnGlobalLayoutListener(visibilityLayoutListener);
+        mAttached = false;
+        updateVisibleOnScreen();
+
+        mMainHandler.removeCallbacks(sendAccessibilityEventRunnable);
+        mAccessibilityEventScheduled.set(false);
+
+        super.onDetachedFromWindow();
+    }
+
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateVisibleOnScreen();
+    }
+
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateVisibleOnScreen();
+    }
+
+
+    /**
+     * Re-evaluates whether the control is visible on screen whenever anything scrolls.
+     */
+    private ViewTreeObserver.OnScrollChangedListener visibilityScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateVisibleOnScreen();
+        }
+    };
+
+
+    /**
+     * Re-evaluates whether the control is visible on screen whenever the layout changes.
+     */
+    private ViewTreeObserver.OnGlobalLayoutListener visibilityLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            updateVisibleOnScreen();
+        }
+    };
+
+
+    /**
+     * Determines whether the control can actually be seen: it must be attached to a window that is visible, it and
+     * all of its ancestors must be visible and some part of it must lie within the visible region of the window.
+     * When the control stops being visible, all per-frame work is suspended. When it becomes visible again, the work
+     * is resumed from where it left off. Must be called on the UI thread.
+     */
+    private void updateVisibleOnScreen() {
+        boolean visible = mAttached && (getWindowVisibility() == View.VISIBLE) && isShown() && getGlobalVisibleRect(mVisibleRect);
+
+        if (visible == mVisibleOnScreen)
+            return;
+
+        if (visible)
+            resumeAnimation();
+        else
+            suspendAnimation();
+    }
+
+
+    /**
+     * Suspends all per-frame work. The play position of the animation in indeterminate mode is remembered so
+     * that it can continue at the same phase when the control becomes visible again. The animation
+     * thread in determinate mode blocks until the control becomes visible.
+     */
+    private void suspendAnimation() {
+        mVisibleOnScreen = false;
+
+        if (mTextureRenderer != null)
+            mTextureRenderer.setPaused(true);
+
+        removeCallbacks(pollProgressSourceRunnable);
+        removeCallbacks(estimatedProgressRunnable);
+        removeCallbacks(startIndeterminateAnimationRunnable);
+
+        // The play time of the indeterminate animation is kept, so it continues from the same point when resumed.
+        if (mIndeterminateAnimator != null)
+            mIndeterminateAnimator.cancel();
+    }
+
+
+    /**
+     * Resumes the per-frame work that was suspended by suspendAnimation.
+     */
+    private void resumeAnimation() {
+        synchronized (mVisibilityLock) {
+            mVisibleOnScreen = true;
+            mVisibilityLock.notifyAll();
+        }
+
+        if (mTextureRenderer != null)
+            mTextureRenderer.setPaused(false);
+
+        if (mProgressSource != null)
+            postOnAnimation(pollProgressSourceRunnable);
+
+        if (mEstimatedDuration > 0)
+            postOnAnimation(estimatedProgressRunnable);
+
+        if (mTerminateProgress || (mIndicatorType != IndicatorTypes.INDETERMINATE.getValue()))
+            return;
+
+        // The animation may not have been created yet if the control was never visible in indeterminate mode.
+        if (mIndeterminateAnimator == null) {
+            runIndeterminateMode();
+            return;
+        }
+
+        mIndeterminateAnimator.start();
+    }
+
+
     /**
      * Adds layouts to handle the bars that get animated.
      */
     private void addControls() {
         mLLBar1 = createDeterminateBar();
-        mLLBar2 = createIndeterminateBar(.5f);
-        mLLBar3 = createIndeterminateBar(.6f);
+        mLLBar2 = createIndeterminateBar(IndeterminateTimeline.BAR2_WIDTH_FACTOR);
+        mLLBar3 = createIndeterminateBar(IndeterminateTimeline.BAR3_WIDTH_FACTOR);
     }
 
 
@@ -210,6 +439,7 @@ public class JBProgressIndicator extends RelativeLayout {
     public JBProgressIndicator(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         mContext = context;
+        initAccessibility();
     }
 
 
@@ -232,15 +462,17 @@ public class JBProgressIndicator extends RelativeLayout {
 
     /**
      * The runnable used to start an animation. The animation will show either a determinate mode
-     * progress indicator or an indetermine indicator.
+     * progress indicator or an indetermine indicator. The thread keeps running until the progress indicator is
+     * stopped, waiting while the indicator is in indeterminate mode, so that the type of indicator can be changed
+     * without restarting it.
      */
     private class AnimateIndicatorRunnable implements Runnable {
         @Override
         public void run() {
-            if (mIndicatorType == IndicatorTypes.DETERMINATE.getValue())
-                runDeterminateMode();
-            else if (mIndicatorType == IndicatorTypes.INDETERMINATE.getValue())
+            if (mIndicatorType == IndicatorTypes.INDETERMINATE.getValue())
                 runIndeterminateMode();
+
+            runDeterminateMode();
         }
     }
 
@@ -249,97 +481,42 @@ public class JBProgressIndicator extends RelativeLayout {
      * Runs the indeterminate mode showing the indicator.
      */
     private void runIndeterminateMode() {
-        // Animate the first bar and once the bar reaches a random point along the x axis, start the
-        // second bar animation.
-        mObjAnimBar2 = createIndeterminateModeAnimation(mLLBar2, 1.4f);
-
-        mObjAnimBar2.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                if (mTerminateProgress)
-                    return;
+        // In texture mode the render thread computes the position of the bars on every frame.
+        if (mRenderMode == RenderModes.TEXTURE.getValue())
+            return;
 
-                long elapsedTime = animation.getCurrentPlayTime();
-                long totalDuration = animation.getDuration();
+        post(startIndeterminateAnimationRunnable);
+    }
 
-                if ((float) elapsedTime / (float) totalDuration > mBar2StartThreshold) {
-                    if (!mObjAnimBar3.isStarted()) {
-                        mBar3StartThreshold = getStartingPercent();
-                        post(bar3AnimationRunnable);
-                    }
-                }
-            }
-        });
 
-        mObjAnimBar3 = createIndeterminateModeAnimation(mLLBar3, .2f);
+    /**
+     * Creates the animation for indeterminate mode. Both bars are driven by a single timeline, so the animation never
+     * has to be restarted. On every frame, the play time of the timeline is advanced and the position and scale of
+     * the bars are computed from it. The play time is only advanced while the animation runs, so the animation
+     * continues from the same point after it was suspended.
+     *
+     * @return The animation object for both bars is returned.
+     */
+    private TimeAnimator createIndeterminateModeAnimation() {
+        TimeAnimator anim = new TimeAnimator();
 
-        mObjAnimBar3.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+        anim.setTimeListener(new TimeAnimator.TimeListener() {
             @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
+            public void onTimeUpdate(TimeAnimator animation, long totalTime, long deltaTime) {
                 if (mTerminateProgress)
                     return;
 
-                long elapsedTime = animation.getCurrentPlayTime();
-                long totalDuration = animation.getDuration();
+                mIndeterminatePlayTime += deltaTime;
+                mIndeterminateTimeline.evaluate(mIndeterminatePlayTime, mAnimationRateIndeterminateMode, getWidth(), mIndeterminateModeRTL);
 
-                if ((float) elapsedTime / (float) totalDuration > mBar3StartThreshold) {
-                    if (!mObjAnimBar2.isStarted()) {
-                        mBar2StartThreshold = getStartingPercent();
-                        post(bar2AnimationRunnable);
-                    }
-                }
+                mLLBar2.setX(mIndeterminateTimeline.bar2X);
+                mLLBar2.setScaleX(mIndeterminateTimeline.bar2ScaleX);
+                mLLBar3.setX(mIndeterminateTimeline.bar3X);
+                mLLBar3.setScaleX(mIndeterminateTimeline.bar3ScaleX);
             }
         });
 
-        // Start the animation by animating the first bar.
-        post(bar2AnimationRunnable);
-    }
-
-
-    /**
-     * Creates an animation for a bar in indeterminate mode.
-     *
-     * @param llBar       The bar that will be animated.
-     * @param widthChange The scale factor that the bar will scale to during the second half of its animation.
-     * @return The animation object for the bar is returned.
-     */
-    private ObjectAnimator createIndeterminateModeAnimation(LinearLayout llBar, final float widthChange) {
-        int w = llBar.getWidth();
-        PropertyValuesHolder pvhXBar;
-
-        if (indeterminateModeIsRTL())
-            if (widthChange < 1)
-                pvhXBar = PropertyValuesHolder.ofFloat("x", getWidth(), -w);
-            else
-                pvhXBar = PropertyValuesHolder.ofFloat("x", getWidth(), -(w * widthChange));
-        else {
-            if (widthChange < 1)
-                pvhXBar = PropertyValuesHolder.ofFloat("x", -w, getWidth());
-            else
-                pvhXBar = PropertyValuesHolder.ofFloat("x", -w, getWidth() * widthChange);
-        }
-
-        Keyframe kf0Bar = Keyframe.ofFloat(0f, 1f);
-        Keyframe kf1Bar = Keyframe.ofFloat(.5f, widthChange);
-        PropertyValuesHolder pvhScaleXBar2 = PropertyValuesHolder.ofKeyframe("scaleX", kf0Bar, kf1Bar);
-        ObjectAnimator objAnim1 = ObjectAnimator.ofPropertyValuesHolder(llBar, pvhScaleXBar2, pvhXBar);
-        objAnim1.setInterpolator(new LinearInterpolator());
-        objAnim1.setDuration(mAnimationRateIndeterminateMode);
-
-        return objAnim1;
-    }
-
-    /**
-     * Returns a random number between 0.5 and 0.9. This represents the percentage of time that must be reached during an
-     * animation before the next bar is animated. 0.5 is 50% of the total animation duration and 0.9 is 90%.
-     *
-     * @return Returns a number between 0.5 and 0.9.
-     */
-    private float getStartingPercent() {
-        final int START_LOWER_THRESHOLD = 50; // 50%
-        final int START_UPPER_THRESHOLD = 90; // 90%
-
-        return ((float) mRandom.nextInt(START_UPPER_THRESHOLD - START_LOWER_THRESHOLD) + START_LOWER_THRESHOLD) / 100f;
+        return anim;
     }
 
 
@@ -354,10 +531,16 @@ public class JBProgressIndicator extends RelativeLayout {
             while (true) {
                 while (true) {
                     // Calculate the width of the bar. We do this each time as it is possible that the client changes the progress indicator's value
-                    // while the animation is already under way.
-                    int width = (int) (((mDeterminateValue - mDeterminateModeMinValue) / (mDeterminateModeMaxValue - mDeterminateModeMinValue)) * getWidth());
+                    // or range while the animation is already under way.
+                    int width = getDeterminateTargetWidth();
 
-                    post(updateDeterminateBarRunnable);
+                    waitUntilDeterminateModeActive();
+
+                    // In texture mode the render thread picks up the new width on its next frame.
+                    if (mRenderMode != RenderModes.TEXTURE.getValue())
+                        post(updateDeterminateBarRunnable);
+                    else
+                        requestRenderedFrame();
 
                     if (mTerminateProgress)
                         return;
@@ -373,9 +556,8 @@ public class JBProgressIndicator extends RelativeLayout {
                         break;
                 }
 
-                double currentVal = mDeterminateValue;
-
-                while ((currentVal == mDeterminateValue) && !mTerminateProgress) {
+                while ((getDeterminateTargetWidth() == mDeterminateBarWidth) && !mTerminateProgress) {
+                    waitUntilDeterminateModeActive();
                     Thread.sleep(1);
 
                     if (mTerminateProgress)
@@ -388,12 +570,53 @@ public class JBProgressIndicator extends RelativeLayout {
     }
 
 
+    /**
+     * Returns true if the bar in determinate mode has finished animating towards the current value, or is not
+     * animating at all because the indicator is stopped, not in determinate mode or not visible.
+     */
+    boolean isDeterminateBarSettled() {
+        if (mTerminateProgress || !mVisibleOnScreen || (mIndicatorType != IndicatorTypes.DETERMINATE.getValue()))
+            return true;
+
+        Thread threadAnimate = mThreadAnimate;
+
+        if ((threadAnimate == null) || !threadAnimate.isAlive())
+            return true;
+
+        return mDeterminateBarWidth == getDeterminateTargetWidth();
+    }
+
+
+    /**
+     * Returns the width that the bar in determinate mode is animating towards.
+     */
+    private int getDeterminateTargetWidth() {
+        return (int) (((mDeterminateValue - mDeterminateModeMinValue) / (mDeterminateModeMaxValue - mDeterminateModeMinValue)) * getWidth());
+    }
+
+
+    /**
+     * Blocks the calling animation thread for as long as the control is not visible on screen or is not in
+     * determinate mode. Returns immediately if the progress indicator is being terminated.
+     */
+    private void waitUntilDeterminateModeActive() throws InterruptedException {
+        synchronized (mVisibilityLock) {
+            while ((!mVisibleOnScreen || (mIndicatorType != IndicatorTypes.DETERMINATE.getValue())) && !mTerminateProgress)
+                mVisibilityLock.wait();
+        }
+    }
+
+
     /**
      * A runnable that updates the bar in determinate mode. Runs on the UI thread.
      */
     private Runnable updateDeterminateBarRunnable = new Runnable() {
         @Override
         public void run() {
+            // A post made just before switching to indeterminate mode must not bring the determinate bar back.
+            if (mIndicatorType != IndicatorTypes.DETERMINATE.getValue())
+                return;
+
             RelativeLayout.LayoutParams loParams = (RelativeLayout.LayoutParams) mLLBar1.getLayoutParams();
             loParams.width = getDeterminateBarWidth();
             mLLBar1.setLayoutParams(loParams);
@@ -402,25 +625,20 @@ public class JBProgressIndicator extends RelativeLayout {
 
 
     /**
-     * Starts the animation for bar2 in indeterminate mode.
+     * Starts the animation in indeterminate mode.
      */
-    private Runnable bar2AnimationRunnable = new Runnable() {
+    private Runnable startIndeterminateAnimationRunnable = new Runnable() {
         @Override
         public void run() {
-            mObjAnimBar2.cancel();
-            mObjAnimBar2.start();
-        }
-    };
+            if (mTerminateProgress || (mIndicatorType != IndicatorTypes.INDETERMINATE.getValue()))
+                return;
 
+            if (mIndeterminateAnimator == null)
+                mIndeterminateAnimator = createIndeterminateModeAnimation();
 
-    /**
-     * Starts the animation for bar3 in indeterminate mode.
-     */
-    private Runnable bar3AnimationRunnable = new Runnable() {
-        @Override
-        public void run() {
-            mObjAnimBar3.cancel();
-            mObjAnimBar3.start();
+            // Don't start animating while the control cannot be seen. The animation is started when it becomes visible.
+            if (mVisibleOnScreen && !mIndeterminateAnimator.isStarted())
+                mIndeterminateAnimator.start();
         }
     };
 
@@ -435,7 +653,7 @@ public class JBProgressIndicator extends RelativeLayout {
             setVisibility(View.VISIBLE);
 
             // Don't animate the indicator into view if it is already showing.
-            if ((mThreadAnimate == null) || (mThreadAnimate.getState() == Thread.State.TERMINATED)) {
+            if (!isAnimationThreadRunning()) {
                 ObjectAnimator anim = ObjectAnimator.ofFloat(this, "scaleY", 0, 1);
                 anim.setDuration(300);
                 anim.start();
@@ -444,7 +662,19 @@ public class JBProgressIndicator extends RelativeLayout {
             startAnimationThread();
         } else {
             ObjectAnimator anim = ObjectAnimator.ofFloat(this, "scaleY", 1, 0);
-            stopProgressIndicator();
+
+            // Keep showing the bars as they are while the indicator shrinks and reset them once it is hidden.
+            terminateProgressIndicator();
+
+            anim.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    if (mTerminateProgress) {
+                        resetBars();
+                        invalidateRenderedFrame();
+                    }
+                }
+            });
 
             anim.setDuration(300);
             anim.start();
@@ -462,15 +692,18 @@ public class JBProgressIndicator extends RelativeLayout {
 
     /**
      * Set the rate of animation in indeterminate mode. Avoid setting this rate too low as it could prevent the
-     * animation of showing. If indeterminate mode is currently running, the new rate value will take affect
-     * when the next bar get animated.
+     * animation of showing. If indeterminate mode is currently running, the new rate takes effect on the next frame
+     * and the bars continue from their current positions.
      *
      * @param rate The rate in milliseconds.
      */
     public void setAnimationRateIndeterminateMode(int rate) {
+        long oldCycleDuration = IndeterminateTimeline.getCycleDuration(mAnimationRateIndeterminateMode);
+        long cycleDuration = IndeterminateTimeline.getCycleDuration(rate);
+
+        // Scale the play time so that the animation stays at the same point of the timeline.
+        mIndeterminatePlayTime = mIndeterminatePlayTime * cycleDuration / oldCycleDuration;
         mAnimationRateIndeterminateMode = rate;
-        mObjAnimBar2.setDuration(mAnimationRateIndeterminateMode);
-        mObjAnimBar3.setDuration(mAnimationRateIndeterminateMode);
     }
 
 
@@ -507,6 +740,7 @@ public class JBProgressIndicator extends RelativeLayout {
      */
     public void setDeterminateModeMaxValue(double maxValue) {
         mDeterminateModeMaxValue = maxValue;
+        updateCompletion(mDeterminateValue);
     }
 
 
@@ -538,10 +772,227 @@ public class JBProgressIndicator extends RelativeLayout {
 
 
     /**
-     * Sets the value to display in determinate mode.
+     * Sets the value to display in determinate mode. Listeners of any milestones that the value crosses are notified.
      */
     public void setDeterminateValue(double value) {
         mDeterminateValue = value;
+
+        mMilestones.update(this, value);
+        updateCompletion(value);
+        scheduleAccessibilityEvent();
+    }
+
+
+    /**
+     * Makes the control visible to accessibility services, which would otherwise ignore it because it has no content
+     * of its own.
+     */
+    private void initAccessibility() {
+        mAccessibilityManager = (AccessibilityManager) mContext.getSystemService(Context.ACCESSIBILITY_SERVICE);
+
+        if (getImportantForAccessibility() == View.IMPORTANT_FOR_ACCESSIBILITY_AUTO)
+            setImportantForAccessibility(View.IMPORTANT_FOR_ACCESSIBILITY_YES);
+    }
+
+
+    /**
+     * Returns the determinate value as a percentage of the range between the minimum and maximum value.
+     */
+    private double getDeterminatePercent() {
+        double percent = (mDeterminateValue - mDeterminateModeMinValue) / (mDeterminateModeMaxValue - mDeterminateModeMinValue) * 100;
+        return Math.max(0, Math.min(100, percent));
+    }
+
+
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+
+        event.setClassName(ProgressBar.class.getName());
+
+        if (mIndicatorType == IndicatorTypes.DETERMINATE.getValue()) {
+            event.setItemCount(100);
+            event.setCurrentItemIndex((int) getDeterminatePercent());
+        }
+    }
+
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+
+        info.setClassName(ProgressBar.class.getName());
+
+        if (mIndicatorType == IndicatorTypes.DETERMINATE.getValue()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_FLOAT,
+                        (float) mDeterminateModeMinValue, (float) mDeterminateModeMaxValue, (float) mDeterminateValue));
+        } else if (getContentDescription() == null)
+            info.setText(getResources().getString(R.string.jbprogressindicator_indeterminate_description));
+    }
+
+
+    /**
+     * Schedules an accessibility event that reports the determinate value. At most one event is sent per
+     * accessibility event interval, and only if the value changed by at least the accessibility event threshold since
+     * the last event. Reaching either end of the range is always reported. Nothing is reported in indeterminate mode,
+     * where the value is not shown. Can be called on any thread.
+     */
+    private void scheduleAccessibilityEvent() {
+        if ((mAccessibilityManager == null) || !mAccessibilityManager.isEnabled() || (mIndicatorType != IndicatorTypes.DETERMINATE.getValue()))
+            return;
+
+        // Only the thread that sets the flag posts the event, so concurrent calls can't schedule it twice.
+        if (!mAccessibilityEventScheduled.compareAndSet(false, true))
+            return;
+
+        long delay = mLastAccessibilityEventTime + mAccessibilityEventInterval - SystemClock.uptimeMillis();
+        // Posted through the main looper because a post to a detached view from another thread could be lost below
+        // API 24, and the flag would then never be cleared.
+        mMainHandler.postDelayed(sendAccessibilityEventRunnable, Math.max(delay, 0));
+    }
+
+
+    /**
+     * Sends the accessibility event scheduled by scheduleAccessibilityEvent. Runs on the UI thread.
+     */
+    private Runnable sendAccessibilityEventRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mAccessibilityEventScheduled.set(false);
+
+            if (mIndicatorType != IndicatorTypes.DETERMINATE.getValue())
+                return;
+
+            double percent = getDeterminatePercent();
+            boolean atEnd = (percent == 0) || (percent == 100);
+
+            // A change too small to report still starts a new interval. Otherwise the next update would be posted
+            // immediately and a slowly rising value would be checked on every update.
+            mLastAccessibilityEventTime = SystemClock.uptimeMillis();
+
+            if (percent == mLastAccessibilityEventPercent)
+                return;
+
+            if (!atEnd && (Math.abs(percent - mLastAccessibilityEventPercent) < mAccessibilityEventThreshold))
+                return;
+
+            mLastAccessibilityEventPercent = percent;
+            sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+        }
+    };
+
+
+    /**
+     * Sets the minimum time between two accessibility events that report the value in determinate mode. Reporting
+     * every change would flood accessibility services when the value is updated frequently.
+     *
+     * @param interval The interval in milliseconds.
+     */
+    public void setAccessibilityEventInterval(long interval) {
+        mAccessibilityEventInterval = interval;
+    }
+
+
+    /**
+     * Returns the minimum time in milliseconds between two accessibility events.
+     */
+    public long getAccessibilityEventInterval() {
+        return mAccessibilityEventInterval;
+    }
+
+
+    /**
+     * Sets how much the value in determinate mode needs to change before the change is reported to accessibility
+     * services.
+     *
+     * @param percent The change as a percentage of the range between the minimum and maximum value.
+     */
+    public void setAccessibilityEventThreshold(double percent) {
+        mAccessibilityEventThreshold = percent;
+    }
+
+
+    /**
+     * Returns how much the value in determinate mode needs to change before the change is reported to accessibility
+     * services, as a percentage of the range.
+     */
+    public double getAccessibilityEventThreshold() {
+        return mAccessibilityEventThreshold;
+    }
+
+
+    /**
+     * Adds a milestone in determinate mode. The listener is notified each time the value rises to or above the
+     * milestone and each time it drops below it again. A milestone at or below the current value is treated as
+     * already reached. Any number of milestones can be added and checking them adds little cost to setting a value.
+     *
+     * @param milestone A value between the minimum and maximum value.
+     * @param executor  The executor on which the listener is called.
+     * @param listener  The listener to notify.
+     */
+    public void addMilestoneListener(double milestone, Executor executor, OnMilestoneListener listener) {
+        if ((executor == null) || (listener == null))
+            throw new NullPointerException("executor and listener must not be null");
+
+        mMilestones.add(milestone, executor, listener);
+    }
+
+
+    /**
+     * Removes all milestones that were added with a listener.
+     */
+    public void removeMilestoneListener(OnMilestoneListener listener) {
+        mMilestones.remove(listener);
+    }
+
+
+    /**
+     * Sets a listener that is notified when the value in determinate mode reaches the maximum value. It is notified
+     * again if the value drops below the maximum and then reaches it once more.
+     *
+     * @param executor The executor on which the listener is called.
+     * @param listener The listener to notify. Set to null to remove the listener.
+     */
+    public void setOnCompletionListener(Executor executor, OnCompletionListener listener) {
+        if ((listener != null) && (executor == null))
+            throw new NullPointerException("executor must not be null");
+
+        synchronized (mCompletionLock) {
+            mOnCompletionExecutor = executor;
+            mOnCompletionListener = listener;
+        }
+    }
+
+
+    /**
+     * Notifies the completion listener if the value has just reached the maximum value.
+     */
+    private void updateCompletion(double value) {
+        final OnCompletionListener listener;
+        Executor executor;
+
+        synchronized (mCompletionLock) {
+            boolean completed = value >= mDeterminateModeMaxValue;
+
+            if (completed == mCompleted)
+                return;
+
+            mCompleted = completed;
+
+            if (!completed || (mOnCompletionListener == null))
+                return;
+
+            listener = mOnCompletionListener;
+            executor = mOnCompletionExecutor;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCompletion(JBProgressIndicator.this);
+            }
+        });
     }
 
 
@@ -553,17 +1004,205 @@ public class JBProgressIndicator extends RelativeLayout {
     }
 
 
+    /**
+     * Sets the color of the animated bars. A running animation continues with the new color.
+     */
+    public void setAnimatedBarColor(int color) {
+        mAnimatedBarColor = color;
+
+        if (mLLBar1 != null) {
+            mLLBar1.setBackgroundColor(color);
+            mLLBar2.setBackgroundColor(color);
+            mLLBar3.setBackgroundColor(color);
+        }
+
+        invalidateRenderedFrame();
+    }
+
+
+    /**
+     * Returns the color of the animated bars.
+     */
+    public int getAnimatedBarColor() {
+        return mAnimatedBarColor;
+    }
+
+
+    /**
+     * Sets the background color of the progress indicator. A running animation continues with the new color.
+     */
+    @Override
+    public void setBackgroundColor(int color) {
+        super.setBackgroundColor(color);
+
+        mBgColor = color;
+        invalidateRenderedFrame();
+    }
+
+
+    /**
+     * Sets a source that the determinate value is read from. The source is polled once per rendered frame and
+     * whenever it reports a new value, the value is applied as if setDeterminateValue had been called. This avoids
+     * having to deliver every progress update to the UI thread, for example when progress is produced in another
+     * process and published through a SharedMemoryProgressSource. Must be called on the UI thread.
+     *
+     * @param source The source to poll. Set to null to stop polling.
+     */
+    public void setProgressSource(ProgressSource source) {
+        removeCallbacks(pollProgressSourceRunnable);
+        mProgressSource = source;
+
+        if ((source != null) && mVisibleOnScreen)
+            postOnAnimation(pollProgressSourceRunnable);
+    }
+
+
+    /**
+     * Returns the source that the determinate value is read from or null if there is none.
+     */
+    public ProgressSource getProgressSource() {
+        return mProgressSource;
+    }
+
+
+    /**
+     * A runnable that polls the progress source. Runs on the UI thread once per frame for as long as a source is set.
+     */
+    private Runnable pollProgressSourceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mProgressSource == null)
+                return;
+
+            if (mProgressSource.poll())
+                setDeterminateValue(mProgressSource.getValue());
+
+            // Polling resumes when the control becomes visible again.
+            if (mVisibleOnScreen)
+                postOnAnimation(this);
+        }
+    };
+
+
+    /**
+     * Starts showing the estimated progress of an operation that does not report any progress of its own. If
+     * durations have been recorded for the operation, the indicator switches to determinate mode and advances along
+     * the expected duration. Otherwise it switches to indeterminate mode. If the history file hasn't been read yet,
+     * indeterminate mode is shown until it has. Call finishEstimatedProgress when the operation is done so that its
+     * duration is recorded. Must be called on the UI thread.
+     *
+     * @param history      The history of durations.
+     * @param operationKey Identifies the operation. Operations with the same key are expected to take about as long.
+     */
+    public void startEstimatedProgress(final DurationHistory history, final String operationKey) {
+        removeCallbacks(estimatedProgressRunnable);
+
+        final int generation = ++mEstimateGeneration;
+
+        mEstimateHistory = history;
+        mEstimateKey = operationKey;
+        mEstimateStartTime = SystemClock.elapsedRealtime();
+        mEstimatedDuration = 0;
+
+        if (history.isLoaded()) {
+            applyEstimatedDuration();
+            return;
+        }
+
+        setIndicatorType(IndicatorTypes.INDETERMINATE.getValue());
+
+        // Runs on the thread that reads the history file. The time that has passed until then counts as part of the
+        // operation.
+        history.runWhenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mEstimateGeneration)
+                            applyEstimatedDuration();
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Looks up the expected duration of the operation started with startEstimatedProgress once the history has been
+     * read, and switches to the mode that fits it.
+     */
+    private void applyEstimatedDuration() {
+        mEstimatedDuration = mEstimateHistory.getExpectedDuration(mEstimateKey);
+
+        if (mEstimatedDuration <= 0) {
+            setIndicatorType(IndicatorTypes.INDETERMINATE.getValue());
+            return;
+        }
+
+        setIndicatorType(IndicatorTypes.DETERMINATE.getValue());
+        estimatedProgressRunnable.run();
+    }
+
+
+    /**
+     * Ends the operation started with startEstimatedProgress and records how long it took. In determinate mode, the
+     * indicator moves to the maximum value. Must be called on the UI thread.
+     */
+    public void finishEstimatedProgress() {
+        if (mEstimateHistory == null)
+            return;
+
+        mEstimateGeneration++;
+        removeCallbacks(estimatedProgressRunnable);
+        mEstimateHistory.recordDuration(mEstimateKey, SystemClock.elapsedRealtime() - mEstimateStartTime);
+
+        if (mEstimatedDuration > 0)
+            setDeterminateValue(mDeterminateModeMaxValue);
+
+        mEstimateHistory = null;
+        mEstimateKey = null;
+        mEstimatedDuration = 0;
+    }
+
+
+    /**
+     * Advances the value in estimated mode. Runs on the UI thread once per frame while the operation is running.
+     * The value moves linearly to ESTIMATED_MODE_EXPECTED_FRACTION of the range over the expected duration. After
+     * that it approaches the maximum value without reaching it.
+     */
+    private Runnable estimatedProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mEstimatedDuration <= 0)
+                return;
+
+            double elapsed = (double) (SystemClock.elapsedRealtime() - mEstimateStartTime) / mEstimatedDuration;
+            double fraction;
+
+            if (elapsed <= 1)
+                fraction = elapsed * ESTIMATED_MODE_EXPECTED_FRACTION;
+            else
+                fraction = 1 - (1 - ESTIMATED_MODE_EXPECTED_FRACTION) * Math.exp(1 - elapsed);
+
+            setDeterminateValue(mDeterminateModeMinValue + (mDeterminateModeMaxValue - mDeterminateModeMinValue) * fraction);
+
+            if (mVisibleOnScreen)
+                postOnAnimation(this);
+        }
+    };
+
+
     /**
      * Sets the direction of animation for indeterminate mode.
      *
      * @param rtl Set to true to have the animation go from right to left (rtl).
      */
     public void setIndeterminateModeDirection(boolean rtl) {
-        if (rtl != mIndeterminateModeRTL) {
-            stopProgressIndicator();
-            mIndeterminateModeRTL = rtl;
-            startAnimationThread();
-        }
+        // The position of the bars is computed from the direction on every frame, so a running animation simply
+        // continues in the new direction.
+        mIndeterminateModeRTL = rtl;
+        invalidateRenderedFrame();
     }
 
 
@@ -575,7 +1214,17 @@ public class JBProgressIndicator extends RelativeLayout {
     }
 
     /**
-     * Starts the animation thread if the control is visible.
+     * Returns true if the animation thread is running and has not been told to terminate.
+     */
+    private boolean isAnimationThreadRunning() {
+        Thread threadAnimate = mThreadAnimate;
+        return (threadAnimate != null) && threadAnimate.isAlive() && !mTerminateProgress;
+    }
+
+
+    /**
+     * Starts the animation thread if the control is visible. Nothing happens if the thread is already running, as it
+     * keeps running across changes of the indicator type.
      */
     private void startAnimationThread() {
         int width = getWidth();
@@ -586,26 +1235,48 @@ public class JBProgressIndicator extends RelativeLayout {
         if (getVisibility() != View.VISIBLE)
             return;
 
-        new Thread(null, new StartAnimationThreadRunnable(), "StartAnimationThreadRunnable_" + UUID.randomUUID()).start();
+        if (isAnimationThreadRunning())
+            return;
 
+        new Thread(null, new StartAnimationThreadRunnable(mTerminateGeneration), "StartAnimationThreadRunnable_" + UUID.randomUUID()).start();
     }
 
 
     /**
-     * The runnable used to start the animation thread. If the thread is currently running, it will block
-     * until the current thread terminates.
+     * The runnable used to start the animation thread. If the previous thread is still terminating, it will block
+     * until that thread has terminated. If the indicator is stopped again in the meantime, no thread is started.
      */
     private class StartAnimationThreadRunnable implements Runnable {
+        private final int mGeneration;
+
+
+        StartAnimationThreadRunnable(int generation) {
+            mGeneration = generation;
+        }
+
+
         @Override
         public void run() {
-            while ((mThreadAnimate != null) && (mThreadAnimate.getState() != Thread.State.TERMINATED)) {
+            try {
+                Thread threadAnimate = mThreadAnimate;
+
+                if (threadAnimate != null)
+                    threadAnimate.join();
+            } catch (InterruptedException ex) {
+                return;
             }
 
-            mTerminateProgress = false;
-            mDeterminateBarWidth = 0;
+            // Several of these runnables can be waiting for the same thread. Only the first one starts a new thread.
+            synchronized (mThreadLock) {
+                if ((mGeneration != mTerminateGeneration) || isAnimationThreadRunning())
+                    return;
+
+                mTerminateProgress = false;
+                mDeterminateBarWidth = 0;
 
-            mThreadAnimate = new Thread(null, new AnimateIndicatorRunnable(), "AnimateIndicatorRunnable_" + UUID.randomUUID());
-            mThreadAnimate.start();
+                mThreadAnimate = new Thread(null, new AnimateIndicatorRunnable(), "AnimateIndicatorRunnable_" + UUID.randomUUID());
+                mThreadAnimate.start();
+            }
         }
     }
 
@@ -616,14 +1287,184 @@ public class JBProgressIndicator extends RelativeLayout {
      * @param type Can be either IndicatorTypes.DETERMINATE or IndicatorTypes.INDETERMINATE.
      */
     public void setIndicatorType(int type) {
-        if (type != mIndicatorType) {
+        if (type == mIndicatorType)
+            return;
+
+        mIndicatorType = type;
+
+        if (!isAnimationThreadRunning()) {
+            startAnimationThread();
+            return;
+        }
+
+        // The animation thread is running, so switch the bars over without restarting it.
+        if (type == IndicatorTypes.INDETERMINATE.getValue()) {
+            // The determinate bar keeps its width internally so that it reappears unchanged when switching back.
+            removeCallbacks(updateDeterminateBarRunnable);
+
+            RelativeLayout.LayoutParams loParams = (RelativeLayout.LayoutParams) mLLBar1.getLayoutParams();
+            loParams.width = 0;
+            mLLBar1.setLayoutParams(loParams);
+
+            // Start the timeline from the beginning, so only the first bar is moving at first.
+            mIndeterminatePlayTime = 0;
+            mRenderTimelineReset = true;
+            runIndeterminateMode();
+        } else {
+            removeCallbacks(startIndeterminateAnimationRunnable);
+
+            if (mIndeterminateAnimator != null)
+                mIndeterminateAnimator.cancel();
+
+            mLLBar2.setX(mIndeterminateModeRTL ? getWidth() : -mLLBar2.getWidth());
+            mLLBar2.setScaleX(1f);
+            mLLBar3.setX(mIndeterminateModeRTL ? getWidth() : -mLLBar3.getWidth());
+            mLLBar3.setScaleX(1f);
+
+            updateDeterminateBarRunnable.run();
+
+            // Wake up the animation thread, which waits while the indicator is in indeterminate mode.
+            synchronized (mVisibilityLock) {
+                mVisibilityLock.notifyAll();
+            }
+        }
+
+        invalidateRenderedFrame();
+    }
+
+
+    /**
+     * Sets how the bars are rendered. In view mode, which is the default, the bars are views that are animated on the
+     * UI thread. In texture mode, the bars are drawn into a TextureView from a dedicated render thread, so no work is
+     * done on the UI thread for each frame. Texture mode requires hardware acceleration.
+     *
+     * @param mode Can be either RenderModes.VIEW or RenderModes.TEXTURE.
+     */
+    public void setRenderMode(int mode) {
+        if (mode != mRenderMode) {
             stopProgressIndicator();
-            mIndicatorType = type;
+            mRenderMode = mode;
+
+            if (mCtlInitialized)
+                applyRenderMode();
+
             startAnimationThread();
         }
     }
 
 
+    /**
+     * Returns the current render mode.
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+
+    /**
+     * Adds or removes the TextureView used in texture mode. The bars used in view mode are hidden while texture mode
+     * is active.
+     */
+    private void applyRenderMode() {
+        boolean textureMode = mRenderMode == RenderModes.TEXTURE.getValue();
+
+        if (textureMode && (mTextureView == null)) {
+            mTextureRenderer = new TextureRenderer(this);
+            mTextureRenderer.setPaused(!mVisibleOnScreen);
+
+            mTextureView = new TextureView(mContext);
+            mTextureView.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            mTextureView.setSurfaceTextureListener(mTextureRenderer);
+            addView(mTextureView);
+        } else if (!textureMode && (mTextureView != null)) {
+            // Removing the view destroys its surface, which stops the render thread.
+            removeView(mTextureView);
+            mTextureView = null;
+            mTextureRenderer = null;
+        }
+
+        int barVisibility = textureMode ? View.INVISIBLE : View.VISIBLE;
+        mLLBar1.setVisibility(barVisibility);
+        mLLBar2.setVisibility(barVisibility);
+        mLLBar3.setVisibility(barVisibility);
+    }
+
+
+    /**
+     * Forces the next frame in texture mode to be drawn even if nothing appears to have changed.
+     */
+    void invalidateRenderedFrame() {
+        mRenderInvalidated = true;
+        requestRenderedFrame();
+    }
+
+
+    /**
+     * Wakes up the render thread in texture mode, in case it stopped drawing because nothing had changed.
+     */
+    private void requestRenderedFrame() {
+        TextureRenderer textureRenderer = mTextureRenderer;
+
+        if (textureRenderer != null)
+            textureRenderer.requestFrame();
+    }
+
+
+    /**
+     * Returns true if the frame last drawn in texture mode no longer reflects the state of the progress indicator.
+     * Called on the render thread.
+     */
+    boolean isRenderedFrameStale() {
+        if (mRenderInvalidated || (mRenderedBarWidth != mDeterminateBarWidth))
+            return true;
+
+        return !mTerminateProgress && (mIndicatorType == IndicatorTypes.INDETERMINATE.getValue());
+    }
+
+
+    /**
+     * Draws a frame in texture mode. Called on the render thread.
+     *
+     * @param canvas   The canvas of the TextureView's surface.
+     * @param playTimeNanos The time in nanoseconds that the render thread has been animating. In indeterminate
+     *                      mode, the position of the bars is computed from this.
+     */
+    void drawFrame(Canvas canvas, long playTimeNanos) {
+        mRenderInvalidated = false;
+        mRenderedBarWidth = mDeterminateBarWidth;
+
+        if ((mIndicatorType == IndicatorTypes.DETERMINATE.getValue()) || mRenderTimelineReset) {
+            mRenderTimelineReset = false;
+            mRenderPlayTime = playTimeNanos;
+            mRenderCycles = 0;
+        }
+
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+
+        canvas.drawColor(mBgColor, PorterDuff.Mode.SRC);
+        mRenderPaint.setColor(mAnimatedBarColor);
+
+        // The determinate bar stays visible while the indicator is being hidden. Its width is reset afterwards.
+        if (mIndicatorType == IndicatorTypes.DETERMINATE.getValue()) {
+            canvas.drawRect(0, 0, mRenderedBarWidth, height, mRenderPaint);
+            return;
+        }
+
+        if (mTerminateProgress)
+            return;
+
+        // Advance the timeline in cycles rather than using the play time directly, so that a change of rate doesn't
+        // make the bars jump.
+        long cycleDuration = IndeterminateTimeline.getCycleDuration(mAnimationRateIndeterminateMode);
+        mRenderCycles += (playTimeNanos - mRenderPlayTime) / (cycleDuration * 1000000.0);
+        mRenderPlayTime = playTimeNanos;
+
+        mRenderTimeline.evaluate((long) (mRenderCycles * cycleDuration), mAnimationRateIndeterminateMode, width, mIndeterminateModeRTL);
+        mRenderTimeline.drawBars(canvas, 0, height, mRenderPaint);
+    }
+
+
     /**
      * Returns the current progress indicator type.
      */
@@ -637,19 +1478,31 @@ public class JBProgressIndicator extends RelativeLayout {
      * If the indicator is in determinate mode, the bar is also not shown. The animation thread is terminated.
      */
     private void stopProgressIndicator() {
+        terminateProgressIndicator();
+        resetBars();
+        invalidateRenderedFrame();
+    }
+
+
+    /**
+     * Stops the animation and terminates the animation thread without resetting the bars.
+     */
+    private void terminateProgressIndicator() {
+        mTerminateGeneration++;
         mTerminateProgress = true;
+        mIndeterminatePlayTime = 0;
+        mRenderTimelineReset = true;
 
-        if (mObjAnimBar2 != null) {
-            mObjAnimBar2.cancel();
-            mObjAnimBar2.removeAllUpdateListeners();
+        // Wake up the animation thread in case it is waiting for the control to become visible.
+        synchronized (mVisibilityLock) {
+            mVisibilityLock.notifyAll();
         }
 
-        if (mObjAnimBar3 != null) {
-            mObjAnimBar3.cancel();
-            mObjAnimBar3.removeAllUpdateListeners();
+        if (mIndeterminateAnimator != null) {
+            mIndeterminateAnimator.cancel();
+            mIndeterminateAnimator.setTimeListener(null);
+            mIndeterminateAnimator = null;
         }
-
-        resetBars();
     }
 
     /**
@@ -664,13 +1517,13 @@ public class JBProgressIndicator extends RelativeLayout {
         loParams.width = getDeterminateBarWidth();
         mLLBar1.setLayoutParams(loParams);
 
-        int bar2Width = (int) (getWidth() * .5f);
+        int bar2Width = (int) (getWidth() * IndeterminateTimeline.BAR2_WIDTH_FACTOR);
         LayoutParams loParams2 = new LayoutParams(bar2Width, LayoutParams.MATCH_PARENT);
         mLLBar2.setLayoutParams(loParams2);
         mLLBar2.setX(-bar2Width);
         mLLBar2.setScaleX(1f);
 
-        int bar3Width = (int) (getWidth() * .6f);
+        int bar3Width = (int) (getWidth() * IndeterminateTimeline.BAR3_WIDTH_FACTOR);
         LayoutParams loParams3 = new LayoutParams(bar3Width, LayoutParams.MATCH_PARENT);
         mLLBar3.setLayoutParams(loParams3);
         mLLBar3.setX(-bar3Width);
@@ -0,0 +1,650 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+
+/**
+ * Displays many progress bars stacked in rows within a single view. This is meant for lists of transfers or similar
+ * where creating a JBProgressIndicator for every row would be too expensive.
+ * <p/>
+ * Each row can be in determinate or indeterminate mode and has its own range and colors. The state of all rows is
+ * kept in primitive arrays. Rows are drawn in chunks of CHUNK_ROWS rows, and each chunk is a child view with its own
+ * display list. With hardware acceleration, the clip and dirty rectangle of a single view cover the whole view when
+ * its display list is recorded, so a view that draws all rows would redraw all of them on every change. Instead, a
+ * change only re-records the chunks that contain changed rows, and the animation in indeterminate mode only re-records
+ * the chunks that contain rows in indeterminate mode. Rows are identified by their index, starting at zero at the top.
+ * <p/>
+ * Values can be set from any thread. Bulk updates should be made with setValues. The number and size of rows must be
+ * set on the UI thread.
+ */
+public class JBProgressIndicatorGroup extends ViewGroup {
+    private final int ANIMATION_RATE_INDETERMINATE_MODE = 800; // milliseconds.
+    private final float ROW_HEIGHT = 2; // dp
+    private final float ROW_SPACING = 8; // dp
+
+    // The number of rows drawn by each chunk. Smaller chunks redraw fewer rows per change but add views.
+    private final int CHUNK_ROWS = 16;
+
+    // Frames further apart than this are treated as a pause, such as while the view was hidden.
+    private final long MAX_FRAME_INTERVAL = 100000000; // nanoseconds.
+
+    private final Object mLock = new Object();
+
+    private int mRowCount;
+    private double[] mValues = new double[0];
+    private double[] mMinValues = new double[0];
+    private double[] mMaxValues = new double[0];
+    private boolean[] mIndeterminate = new boolean[0];
+    private int[] mBarColors = new int[0];
+    private int[] mBgColors = new int[0];
+    private int mIndeterminateCount;
+
+    private RowChunk[] mChunks = new RowChunk[0];
+    private int[] mChunkIndeterminateCounts = new int[0];
+    private boolean[] mChunkDirty = new boolean[0];
+    private int[] mDirtyChunks = new int[0];
+    private int mDirtyChunkCount;
+
+    private int mDefaultBarColor;
+    private int mDefaultBgColor;
+    private int mRowHeight;
+    private int mRowSpacing;
+    private int mAnimationRateIndeterminateMode;
+    private boolean mIndeterminateModeRTL;
+
+    private final Paint mPaint = new Paint();
+    private final IndeterminateTimeline mTimeline = new IndeterminateTimeline();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private long mPlayTimeNanos;
+    private volatile boolean mAttached;
+
+    // Only accessed on the UI thread.
+    private long mLastFrameTimeNanos;
+    private boolean mAnimationRunning;
+
+
+    public JBProgressIndicatorGroup(Context context) {
+        this(context, null);
+    }
+
+
+    public JBProgressIndicatorGroup(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+
+    public JBProgressIndicatorGroup(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.JBProgressIndicatorGroup, defStyleAttr, 0);
+        float density = getResources().getDisplayMetrics().density;
+
+        mDefaultBgColor = getResources().getColor(R.color.default_progress_indicator_background_color);
+
+        // Get the color of the animated bars.
+        String animBarColor = a.getString(R.styleable.JBProgressIndicatorGroup_animatedBarColor);
+
+        if (animBarColor != null)
+            mDefaultBarColor = Color.parseColor(animBarColor);
+        else
+            mDefaultBarColor = getResources().getColor(R.color.default_progress_indicator_bar_color);
+
+        mRowHeight = a.getDimensionPixelSize(R.styleable.JBProgressIndicatorGroup_groupRowHeight, (int) (ROW_HEIGHT * density + .5f));
+        mRowSpacing = a.getDimensionPixelSize(R.styleable.JBProgressIndicatorGroup_groupRowSpacing, (int) (ROW_SPACING * density + .5f));
+        mIndeterminateModeRTL = a.getBoolean(R.styleable.JBProgressIndicatorGroup_indeterminateModeRTL, false);
+        mAnimationRateIndeterminateMode = a.getInt(R.styleable.JBProgressIndicatorGroup_animationRateIndeterminateMode, ANIMATION_RATE_INDETERMINATE_MODE);
+
+        int rowCount = a.getInt(R.styleable.JBProgressIndicatorGroup_groupRowCount, 0);
+
+        a.recycle();
+
+        setRowCount(rowCount);
+    }
+
+
+    /**
+     * Sets the number of rows. Existing rows keep their state. New rows are in determinate mode with a range of 0 to
+     * 100, a value of 0 and the default colors. Must be called on the UI thread.
+     */
+    public void setRowCount(int rowCount) {
+        if (rowCount < 0)
+            throw new IllegalArgumentException("rowCount must not be negative: " + rowCount);
+
+        RowChunk[] oldChunks;
+        RowChunk[] chunks;
+
+        synchronized (mLock) {
+            int oldRowCount = mRowCount;
+
+            mValues = Arrays.copyOf(mValues, rowCount);
+            mMinValues = Arrays.copyOf(mMinValues, rowCount);
+            mMaxValues = Arrays.copyOf(mMaxValues, rowCount);
+            mIndeterminate = Arrays.copyOf(mIndeterminate, rowCount);
+            mBarColors = Arrays.copyOf(mBarColors, rowCount);
+            mBgColors = Arrays.copyOf(mBgColors, rowCount);
+            mRowCount = rowCount;
+
+            for (int row = oldRowCount; row < rowCount; row++) {
+                mMaxValues[row] = 100;
+                mBarColors[row] = mDefaultBarColor;
+                mBgColors[row] = mDefaultBgColor;
+            }
+
+            int chunkCount = (rowCount + CHUNK_ROWS - 1) / CHUNK_ROWS;
+
+            oldChunks = mChunks;
+            chunks = Arrays.copyOf(mChunks, chunkCount);
+
+            for (int chunk = oldChunks.length; chunk < chunkCount; chunk++)
+                chunks[chunk] = new RowChunk(getContext(), chunk);
+
+            mChunks = chunks;
+            mChunkIndeterminateCounts = new int[chunkCount];
+            mChunkDirty = new boolean[chunkCount];
+            mDirtyChunks = new int[chunkCount];
+            mDirtyChunkCount = 0;
+            mIndeterminateCount = 0;
+
+            for (int row = 0; row < rowCount; row++) {
+                if (mIndeterminate[row]) {
+                    mChunkIndeterminateCounts[row / CHUNK_ROWS]++;
+                    mIndeterminateCount++;
+                }
+            }
+        }
+
+        for (int chunk = chunks.length; chunk < oldChunks.length; chunk++)
+            removeView(oldChunks[chunk]);
+
+        for (int chunk = oldChunks.length; chunk < chunks.length; chunk++)
+            addView(chunks[chunk]);
+
+        // The last of the existing chunks may have gained or lost rows.
+        invalidateAllChunks();
+        startAnimation();
+    }
+
+
+    /**
+     * Returns the number of rows.
+     */
+    public int getRowCount() {
+        synchronized (mLock) {
+            return mRowCount;
+        }
+    }
+
+
+    /**
+     * Sets the values of several rows in determinate mode. Only the chunks of rows whose value actually changes are
+     * redrawn.
+     *
+     * @param ids    The indexes of the rows to update.
+     * @param values The new values. values[i] is applied to the row ids[i].
+     */
+    public void setValues(int[] ids, double[] values) {
+        if (ids.length != values.length)
+            throw new IllegalArgumentException("ids and values must have the same length");
+
+        synchronized (mLock) {
+            for (int i = 0; i < ids.length; i++) {
+                int row = ids[i];
+
+                if (mValues[row] != values[i]) {
+                    mValues[row] = values[i];
+                    markRowDirty(row);
+                }
+            }
+
+            invalidateDirtyChunks();
+        }
+    }
+
+
+    /**
+     * Sets the value of a single row in determinate mode.
+     */
+    public void setValue(int id, double value) {
+        synchronized (mLock) {
+            if (mValues[id] == value)
+                return;
+
+            mValues[id] = value;
+            markRowDirty(id);
+            invalidateDirtyChunks();
+        }
+    }
+
+
+    /**
+     * Returns the value of a row in determinate mode.
+     */
+    public double getValue(int id) {
+        synchronized (mLock) {
+            return mValues[id];
+        }
+    }
+
+
+    /**
+     * Sets the range of values of a row in determinate mode.
+     *
+     * @param id       The index of the row.
+     * @param minValue The value at which the bar is empty.
+     * @param maxValue The value at which the bar is full. Must be greater than minValue.
+     */
+    public void setRange(int id, double minValue, double maxValue) {
+        synchronized (mLock) {
+            mMinValues[id] = minValue;
+            mMaxValues[id] = maxValue;
+            markRowDirty(id);
+            invalidateDirtyChunks();
+        }
+    }
+
+
+    /**
+     * Switches a row between determinate and indeterminate mode.
+     */
+    public void setIndeterminate(int id, boolean indeterminate) {
+        synchronized (mLock) {
+            if (mIndeterminate[id] == indeterminate)
+                return;
+
+            int delta = indeterminate ? 1 : -1;
+
+            mIndeterminate[id] = indeterminate;
+            mChunkIndeterminateCounts[id / CHUNK_ROWS] += delta;
+            mIndeterminateCount += delta;
+            markRowDirty(id);
+            invalidateDirtyChunks();
+        }
+
+        if (indeterminate)
+            startAnimation();
+    }
+
+
+    /**
+     * Returns true if a row is in indeterminate mode.
+     */
+    public boolean isIndeterminate(int id) {
+        synchronized (mLock) {
+            return mIndeterminate[id];
+        }
+    }
+
+
+    /**
+     * Sets the colors of a row.
+     *
+     * @param id       The index of the row.
+     * @param barColor The color of the animated bars.
+     * @param bgColor  The color of the row behind the bars.
+     */
+    public void setRowColors(int id, int barColor, int bgColor) {
+        synchronized (mLock) {
+            mBarColors[id] = barColor;
+            mBgColors[id] = bgColor;
+            markRowDirty(id);
+            invalidateDirtyChunks();
+        }
+    }
+
+
+    /**
+     * Sets the height of each row in pixels. Must be called on the UI thread.
+     */
+    public void setRowHeight(int rowHeight) {
+        synchronized (mLock) {
+            mRowHeight = rowHeight;
+        }
+
+        requestLayout();
+        invalidateAllChunks();
+    }
+
+
+    /**
+     * Returns the height of each row in pixels.
+     */
+    public int getRowHeight() {
+        return mRowHeight;
+    }
+
+
+    /**
+     * Sets the vertical space between rows in pixels. Must be called on the UI thread.
+     */
+    public void setRowSpacing(int rowSpacing) {
+        synchronized (mLock) {
+            mRowSpacing = rowSpacing;
+        }
+
+        requestLayout();
+        invalidateAllChunks();
+    }
+
+
+    /**
+     * Returns the vertical space between rows in pixels.
+     */
+    public int getRowSpacing() {
+        return mRowSpacing;
+    }
+
+
+    /**
+     * Set the rate of animation for rows in indeterminate mode.
+     *
+     * @param rate The rate in milliseconds.
+     */
+    public void setAnimationRateIndeterminateMode(int rate) {
+        synchronized (mLock) {
+            mAnimationRateIndeterminateMode = rate;
+        }
+    }
+
+
+    /**
+     * A getter to access the animation rate in indeterminate mode.
+     */
+    public int getAnimationRateIndeterminateMode() {
+        return mAnimationRateIndeterminateMode;
+    }
+
+
+    /**
+     * Sets the direction of animation for rows in indeterminate mode.
+     *
+     * @param rtl Set to true to have the animation go from right to left (rtl).
+     */
+    public void setIndeterminateModeDirection(boolean rtl) {
+        synchronized (mLock) {
+            mIndeterminateModeRTL = rtl;
+        }
+    }
+
+
+    /**
+     * Returns true if the direction of indeterminate mode is right to left (rtl)
+     */
+    public boolean indeterminateModeIsRTL() {
+        return mIndeterminateModeRTL;
+    }
+
+
+    /**
+     * Adds the chunk of a row to the list of chunks that are redrawn on the next frame. Must be called while holding
+     * mLock.
+     */
+    private void markRowDirty(int row) {
+        int chunk = row / CHUNK_ROWS;
+
+        if (mChunkDirty[chunk])
+            return;
+
+        mChunkDirty[chunk] = true;
+        mDirtyChunks[mDirtyChunkCount++] = chunk;
+    }
+
+
+    /**
+     * Redraws the chunks added by markRowDirty on the next frame. Only the display lists of these chunks are
+     * re-recorded. Must be called while holding mLock.
+     */
+    private void invalidateDirtyChunks() {
+        for (int i = 0; i < mDirtyChunkCount; i++) {
+            int chunk = mDirtyChunks[i];
+            mChunkDirty[chunk] = false;
+            mChunks[chunk].postInvalidateOnAnimation();
+        }
+
+        mDirtyChunkCount = 0;
+    }
+
+
+    /**
+     * Redraws all chunks on the next frame. Runs on the UI thread.
+     */
+    private void invalidateAllChunks() {
+        for (int chunk = 0; chunk < getChildCount(); chunk++)
+            getChildAt(chunk).invalidate();
+    }
+
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int rowCount = getRowCount();
+        int height = rowCount * mRowHeight + Math.max(rowCount - 1, 0) * mRowSpacing;
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+
+        for (int chunk = 0; chunk < getChildCount(); chunk++) {
+            getChildAt(chunk).measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(getChunkHeight(chunk, rowCount), MeasureSpec.EXACTLY));
+        }
+    }
+
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int rowCount = getRowCount();
+
+        for (int chunk = 0; chunk < getChildCount(); chunk++) {
+            int top = chunk * CHUNK_ROWS * (mRowHeight + mRowSpacing);
+            getChildAt(chunk).layout(0, top, r - l, top + getChunkHeight(chunk, rowCount));
+        }
+    }
+
+
+    /**
+     * Returns the height of a chunk. The space below the last row of a chunk belongs to the chunk, except for the
+     * last chunk, which ends with the last row.
+     */
+    private int getChunkHeight(int chunk, int rowCount) {
+        int firstRow = chunk * CHUNK_ROWS;
+        int rows = Math.min(CHUNK_ROWS, rowCount - firstRow);
+        int spacings = (firstRow + rows < rowCount) ? rows : rows - 1;
+
+        return rows * mRowHeight + Math.max(spacings, 0) * mRowSpacing;
+    }
+
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        mAttached = true;
+        startAnimation();
+    }
+
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttached = false;
+        mAnimationRunning = false;
+        Choreographer.getInstance().removeFrameCallback(animationFrameCallback);
+
+        super.onDetachedFromWindow();
+    }
+
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        // Animation stops by itself while the view is hidden, so it has to be started again.
+        if (isShown())
+            startAnimation();
+    }
+
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        if (visibility == View.VISIBLE)
+            startAnimation();
+    }
+
+
+    /**
+     * Starts animating the rows in indeterminate mode, unless the animation is already running. Can be called on any
+     * thread. The animation is started through the main looper because a post to a view from another thread can be
+     * lost below API 24 while the view is detached.
+     */
+    private void startAnimation() {
+        // Nothing is animated until the view is attached, which also starts the animation.
+        if (mAttached)
+            mMainHandler.post(startAnimationRunnable);
+    }
+
+
+    private Runnable startAnimationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mAnimationRunning || !mAttached || !isShown())
+                return;
+
+            synchronized (mLock) {
+                if (mIndeterminateCount == 0)
+                    return;
+            }
+
+            mAnimationRunning = true;
+            mLastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(animationFrameCallback);
+        }
+    };
+
+
+    /**
+     * Advances the animation in indeterminate mode on every frame and redraws the chunks that contain rows in
+     * indeterminate mode. Stops once no row is in indeterminate mode or the view is hidden.
+     */
+    private Choreographer.FrameCallback animationFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mAnimationRunning = false;
+
+            if (!mAttached || !isShown())
+                return;
+
+            synchronized (mLock) {
+                if (mIndeterminateCount == 0)
+                    return;
+
+                long elapsed = frameTimeNanos - mLastFrameTimeNanos;
+
+                if ((mLastFrameTimeNanos != 0) && (elapsed < MAX_FRAME_INTERVAL))
+                    mPlayTimeNanos += elapsed;
+
+                mLastFrameTimeNanos = frameTimeNanos;
+                mTimeline.evaluate(mPlayTimeNanos / 1000000, mAnimationRateIndeterminateMode, getWidth(), mIndeterminateModeRTL);
+
+                for (int chunk = 0; chunk < mChunks.length; chunk++) {
+                    if (mChunkIndeterminateCounts[chunk] > 0)
+                        mChunks[chunk].invalidate();
+                }
+            }
+
+            mAnimationRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+
+    /**
+     * Draws a single row. Must be called while holding mLock.
+     *
+     * @param top The top edge of the row within the canvas of its chunk.
+     */
+    private void drawRow(Canvas canvas, int row, int top, int width) {
+        int bottom = top + mRowHeight;
+
+        mPaint.setColor(mBgColors[row]);
+        canvas.drawRect(0, top, width, bottom, mPaint);
+
+        mPaint.setColor(mBarColors[row]);
+
+        if (mIndeterminate[row]) {
+            mTimeline.drawBars(canvas, top, bottom, mPaint);
+        } else {
+            double fraction = (mValues[row] - mMinValues[row]) / (mMaxValues[row] - mMinValues[row]);
+            fraction = Math.max(0, Math.min(1, fraction));
+
+            canvas.drawRect(0, top, (float) (fraction * width), bottom, mPaint);
+        }
+    }
+
+
+    /**
+     * Draws CHUNK_ROWS consecutive rows. Each chunk is a separate view, so it is only redrawn when one of its own rows
+     * changes.
+     */
+    private class RowChunk extends View {
+        private final int mIndex;
+
+
+        RowChunk(Context context, int index) {
+            super(context);
+            mIndex = index;
+        }
+
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            int width = getWidth();
+
+            synchronized (mLock) {
+                int rowPitch = mRowHeight + mRowSpacing;
+                int firstRow = mIndex * CHUNK_ROWS;
+                int lastRow = Math.min(firstRow + CHUNK_ROWS, mRowCount);
+
+                for (int row = firstRow; row < lastRow; row++)
+                    drawRow(canvas, row, (row - firstRow) * rowPitch, width);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A Reactive Streams subscriber that displays the progress values emitted by a publisher on a progress indicator in
+ * determinate mode.
+ * <p/>
+ * Only one value is requested at a time and the next one is requested once the previous one has been applied on the
+ * next animation frame. A fast publisher is therefore backpressured to the frame rate of the indicator instead of
+ * flooding the UI thread. If the publisher emits more than it was asked for, only the latest value is displayed.
+ * <p/>
+ * When the publisher completes, the indicator is moved to its maximum value and hidden with showHide once the bar has
+ * reached it. When the publisher fails, the indicator is hidden.
+ * <p/>
+ * The signals of the publisher are handed to the UI thread through a handler rather than by posting to the progress
+ * indicator directly. Before API 24, a runnable posted to a view that is not attached yet is queued on the posting
+ * thread and would never run if that thread is not the UI thread.
+ */
+public class JBProgressIndicatorSubscriber implements Subscriber<Number> {
+    private final JBProgressIndicator mProgressIndicator;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile Subscription mSubscription;
+    private volatile Number mLatestValue;
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean();
+    private volatile boolean mCancelled;
+
+
+    /**
+     * @param progressIndicator The progress indicator that displays the values.
+     */
+    public JBProgressIndicatorSubscriber(JBProgressIndicator progressIndicator) {
+        if (progressIndicator == null)
+            throw new NullPointerException("progressIndicator");
+
+        mProgressIndicator = progressIndicator;
+    }
+
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null)
+            throw new NullPointerException("subscription");
+
+        // Only a single subscription is allowed.
+        if ((mSubscription != null) || mCancelled) {
+            subscription.cancel();
+            return;
+        }
+
+        mSubscription = subscription;
+        subscription.request(1);
+    }
+
+
+    @Override
+    public void onNext(Number value) {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        mLatestValue = value;
+
+        if (mFrameScheduled.compareAndSet(false, true))
+            mMainHandler.post(scheduleFrameRunnable);
+    }
+
+
+    @Override
+    public void onError(Throwable t) {
+        if (t == null)
+            throw new NullPointerException("t");
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mProgressIndicator.removeCallbacks(applyValueRunnable);
+                mProgressIndicator.showHide(false);
+            }
+        });
+    }
+
+
+    @Override
+    public void onComplete() {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mProgressIndicator.removeCallbacks(applyValueRunnable);
+                mProgressIndicator.setDeterminateValue(mProgressIndicator.getDeterminateModeMaxValue());
+                mProgressIndicator.postOnAnimation(hideWhenSettledRunnable);
+            }
+        });
+    }
+
+
+    /**
+     * Cancels the subscription. No further values are displayed.
+     */
+    public void cancel() {
+        mCancelled = true;
+
+        Subscription subscription = mSubscription;
+
+        if (subscription != null)
+            subscription.cancel();
+    }
+
+
+    /**
+     * Schedules applyValueRunnable for the next animation frame. Runs on the UI thread, where posting to the progress
+     * indicator works even if it is not attached to a window yet.
+     */
+    private Runnable scheduleFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mProgressIndicator.postOnAnimation(applyValueRunnable);
+        }
+    };
+
+
+    /**
+     * Hides the progress indicator once the bar has finished animating to the maximum value. Runs on the UI thread
+     * once per animation frame until then.
+     */
+    private Runnable hideWhenSettledRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mProgressIndicator.isDeterminateBarSettled()) {
+                mProgressIndicator.postOnAnimation(this);
+                return;
+            }
+
+            // Posted so that it runs after the last pending update of the bar.
+            mProgressIndicator.post(new Runnable() {
+                @Override
+                public void run() {
+                    mProgressIndicator.showHide(false);
+                }
+            });
+        }
+    };
+
+
+    /**
+     * Applies the latest value to the progress indicator and requests the next one. Runs on the UI thread once per
+     * animation frame at most.
+     */
+    private Runnable applyValueRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFrameScheduled.set(false);
+
+            if (mCancelled)
+                return;
+
+            mProgressIndicator.setDeterminateValue(mLatestValue.doubleValue());
+            mSubscription.request(1);
+        }
+    };
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+
+/**
+ * Lookup tables for the Material Design easing curves. Each curve is a cubic bezier that is sampled once when the
+ * class is loaded, so evaluating a curve during an animation frame costs two array reads and a linear interpolation.
+ */
+final class MaterialEasing {
+    private static final int TABLE_SIZE = 257;
+
+    /**
+     * The standard curve: cubic-bezier(0.4, 0.0, 0.2, 1.0).
+     */
+    static final float[] FAST_OUT_SLOW_IN = createTable(.4f, 0f, .2f, 1f);
+
+    /**
+     * The deceleration curve: cubic-bezier(0.0, 0.0, 0.2, 1.0).
+     */
+    static final float[] LINEAR_OUT_SLOW_IN = createTable(0f, 0f, .2f, 1f);
+
+
+    private MaterialEasing() {
+    }
+
+
+    /**
+     * Evaluates an easing curve.
+     *
+     * @param table    One of the tables in this class.
+     * @param fraction The elapsed fraction of the animation. Values outside of 0 to 1 are clamped.
+     * @return Returns the eased fraction.
+     */
+    static float interpolate(float[] table, float fraction) {
+        if (fraction <= 0)
+            return table[0];
+
+        float position = fraction * (table.length - 1);
+        int index = (int) position;
+
+        if (index >= table.length - 1)
+            return table[table.length - 1];
+
+        return table[index] + (table[index + 1] - table[index]) * (position - index);
+    }
+
+
+    /**
+     * Samples a cubic bezier running from (0, 0) to (1, 1) at evenly spaced x values.
+     */
+    private static float[] createTable(float x1, float y1, float x2, float y2) {
+        float[] table = new float[TABLE_SIZE];
+
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            float x = (float) i / (TABLE_SIZE - 1);
+
+            // x increases monotonically with t, so t can be found with a binary search.
+            float low = 0;
+            float high = 1;
+            float t = x;
+
+            for (int j = 0; j < 24; j++) {
+                t = (low + high) / 2;
+
+                if (bezier(t, x1, x2) < x)
+                    low = t;
+                else
+                    high = t;
+            }
+
+            table[i] = bezier(t, y1, y2);
+        }
+
+        table[0] = 0;
+        table[TABLE_SIZE - 1] = 1;
+
+        return table;
+    }
+
+
+    /**
+     * Evaluates one coordinate of a cubic bezier whose first and last control points are 0 and 1.
+     */
+    private static float bezier(float t, float p1, float p2) {
+        float u = 1 - t;
+        return 3 * u * u * t * p1 + 3 * u * t * t * p2 + t * t * t;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+
+/**
+ * The milestones registered on a progress indicator, kept sorted by value in a primitive array.
+ * <p/>
+ * The index remembers the last value and its position, which is the number of milestones at or below the last value.
+ * Both are only changed while holding the lock, so a milestone that is added while the value is being updated is
+ * compared against the same value that the update uses. An update only has
+ * to binary search the part of the array between the old position and the new value. Every milestone between the old
+ * and the new position has been crossed and its listener is notified exactly once.
+ */
+final class MilestoneIndex {
+    private double[] mMilestones = new double[0];
+    private JBProgressIndicator.OnMilestoneListener[] mListeners = new JBProgressIndicator.OnMilestoneListener[0];
+    private Executor[] mExecutors = new Executor[0];
+    private int mCount;
+    private int mPosition;
+    private double mLastValue;
+
+
+    /**
+     * Adds a milestone. A milestone at or below the last value counts as already crossed, so its listener is only
+     * notified once the value drops below it.
+     *
+     * @param milestone The value that triggers the listener.
+     * @param executor  The executor on which the listener is called.
+     * @param listener  The listener to notify.
+     */
+    synchronized void add(double milestone, Executor executor, JBProgressIndicator.OnMilestoneListener listener) {
+        if (mCount == mMilestones.length) {
+            int capacity = Math.max(4, mCount * 2);
+            mMilestones = Arrays.copyOf(mMilestones, capacity);
+            mListeners = Arrays.copyOf(mListeners, capacity);
+            mExecutors = Arrays.copyOf(mExecutors, capacity);
+        }
+
+        // Milestones with the same value are kept in the order they were added.
+        int index = upperBound(milestone, 0, mCount);
+
+        System.arraycopy(mMilestones, index, mMilestones, index + 1, mCount - index);
+        System.arraycopy(mListeners, index, mListeners, index + 1, mCount - index);
+        System.arraycopy(mExecutors, index, mExecutors, index + 1, mCount - index);
+
+        mMilestones[index] = milestone;
+        mListeners[index] = listener;
+        mExecutors[index] = executor;
+        mCount++;
+
+        if (milestone <= mLastValue)
+            mPosition++;
+    }
+
+
+    /**
+     * Removes all milestones registered with a listener.
+     */
+    synchronized void remove(JBProgressIndicator.OnMilestoneListener listener) {
+        int count = 0;
+        int position = mPosition;
+
+        for (int i = 0; i < mCount; i++) {
+            if (mListeners[i] == listener) {
+                if (i < mPosition)
+                    position--;
+
+                continue;
+            }
+
+            mMilestones[count] = mMilestones[i];
+            mListeners[count] = mListeners[i];
+            mExecutors[count] = mExecutors[i];
+            count++;
+        }
+
+        Arrays.fill(mListeners, count, mCount, null);
+        Arrays.fill(mExecutors, count, mCount, null);
+        mCount = count;
+        mPosition = position;
+    }
+
+
+    /**
+     * Moves the index to a new value and notifies the listeners of all milestones that were crossed. When the value
+     * increases, milestones are notified in ascending order. When it decreases, they are notified in descending order.
+     */
+    void update(final JBProgressIndicator progressIndicator, double value) {
+        double[] milestones;
+        JBProgressIndicator.OnMilestoneListener[] listeners;
+        Executor[] executors;
+        final boolean increasing;
+
+        synchronized (this) {
+            int oldPosition = mPosition;
+            int newPosition;
+
+            mLastValue = value;
+
+            if ((oldPosition < mCount) && (mMilestones[oldPosition] <= value))
+                newPosition = upperBound(value, oldPosition + 1, mCount);
+            else if ((oldPosition > 0) && (mMilestones[oldPosition - 1] > value))
+                newPosition = upperBound(value, 0, oldPosition - 1);
+            else
+                return;
+
+            mPosition = newPosition;
+            increasing = newPosition > oldPosition;
+
+            // Copy the crossed milestones so that the listeners are called without holding the lock.
+            int from = Math.min(oldPosition, newPosition);
+            int to = Math.max(oldPosition, newPosition);
+
+            milestones = Arrays.copyOfRange(mMilestones, from, to);
+            listeners = Arrays.copyOfRange(mListeners, from, to);
+            executors = Arrays.copyOfRange(mExecutors, from, to);
+        }
+
+        for (int i = 0; i < milestones.length; i++) {
+            int index = increasing ? i : milestones.length - 1 - i;
+            final double milestone = milestones[index];
+            final JBProgressIndicator.OnMilestoneListener listener = listeners[index];
+
+            executors[index].execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onMilestone(progressIndicator, milestone, increasing);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Returns the index of the first milestone within the range from fromIndex to toIndex (exclusive) that is
+     * greater than the value, or toIndex if there is none.
+     */
+    private int upperBound(double value, int fromIndex, int toIndex) {
+        int low = fromIndex;
+        int high = toIndex;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (mMilestones[mid] <= value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A progress source that reads progress from a slot in a memory-mapped file. The file is written by a
+ * SharedMemoryProgressWriter, typically running in another process such as a ":worker" process. Because the file is
+ * mapped into both processes, publishing a value requires no IPC and reading it costs a few memory reads per frame.
+ * <p/>
+ * A file can hold several slots, one for each operation. Each slot is SLOT_SIZE bytes long and has this layout:
+ * <p/>
+ * <pre>
+ * offset 0: long   sequence number. Odd while the writer is updating the slot, even once the value is complete.
+ * offset 8: double progress value.
+ * </pre>
+ * The reader discards a value if the sequence number is odd or changes while the value is being read and simply
+ * tries again on the next frame.
+ * <p/>
+ * A slot keeps its last value when the writer is closed, and a new writer continues from the sequence number it finds.
+ * So that a reader never reports the value of an earlier operation, it skips whatever the slot holds when the reader is
+ * created and only reports values that are published afterwards. The writer should therefore publish the initial
+ * value of an operation after the reader has been created, or publish values repeatedly as the operation progresses.
+ */
+public class SharedMemoryProgressSource implements ProgressSource, Closeable {
+    /**
+     * The size in bytes of a single slot.
+     */
+    public static final int SLOT_SIZE = 16;
+
+    static final int OFFSET_SEQUENCE = 0;
+    static final int OFFSET_VALUE = 8;
+
+    // Only used by memoryFence.
+    private static volatile int sFence;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mOffset;
+
+    private long mLastSequence;
+    private double mValue;
+
+
+    /**
+     * Maps a slot of a shared progress file for reading. The file must already have been created by a
+     * SharedMemoryProgressWriter.
+     *
+     * @param file      The shared progress file.
+     * @param slotIndex The index of the slot to read.
+     * @throws IOException Thrown if the file cannot be mapped or does not contain the slot.
+     */
+    public SharedMemoryProgressSource(File file, int slotIndex) throws IOException {
+        if (slotIndex < 0)
+            throw new IllegalArgumentException("slotIndex must not be negative: " + slotIndex);
+
+        mFile = new RandomAccessFile(file, "r");
+
+        try {
+            mOffset = slotIndex * SLOT_SIZE;
+
+            if (mFile.length() < mOffset + SLOT_SIZE)
+                throw new IOException("The file " + file + " does not contain slot " + slotIndex);
+
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_ONLY, mOffset, SLOT_SIZE);
+            mBuffer.order(ByteOrder.nativeOrder());
+        } catch (IOException ex) {
+            mFile.close();
+            throw ex;
+        }
+
+        // Skip the value left in the slot by an earlier operation. If the writer is in the middle of an update, the
+        // value it is writing is new and gets reported once the update is complete.
+        mLastSequence = mBuffer.getLong(OFFSET_SEQUENCE) & ~1L;
+    }
+
+
+    /**
+     * Reads the slot. Only the sequence number is read if the writer has not published a new value since the last call.
+     */
+    @Override
+    public boolean poll() {
+        long sequence = mBuffer.getLong(OFFSET_SEQUENCE);
+
+        // Nothing new or the writer is in the middle of an update.
+        if ((sequence == mLastSequence) || ((sequence & 1) != 0))
+            return false;
+
+        memoryFence();
+        double value = mBuffer.getDouble(OFFSET_VALUE);
+        memoryFence();
+
+        // The writer updated the slot while it was being read. Try again on the next frame.
+        if (mBuffer.getLong(OFFSET_SEQUENCE) != sequence)
+            return false;
+
+        mLastSequence = sequence;
+        mValue = value;
+        return true;
+    }
+
+
+    /**
+     * Prevents memory accesses to the slot from being reordered across this call, by the compiler or by the CPU.
+     * <p/>
+     * Reads and writes through a MappedByteBuffer are plain memory accesses. Without a fence, a CPU with a weak memory
+     * model such as ARM may make the writer's new even sequence number visible before the value, or let the reader
+     * load the value and the sequence number out of order. The reader would then accept a stale or torn value as
+     * consistent. A volatile write followed by a volatile read cannot be reordered with any access before or after
+     * them, so together they act as a full fence. This works on all API levels, unlike VarHandle fences.
+     */
+    static void memoryFence() {
+        sFence = 0;
+
+        // Volatile reads are never eliminated, even though the value is not used.
+        @SuppressWarnings("unused")
+        int fence = sFence;
+    }
+
+
+    @Override
+    public double getValue() {
+        return mValue;
+    }
+
+
+    /**
+     * Closes the underlying file. The mapping itself is released once the buffer is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
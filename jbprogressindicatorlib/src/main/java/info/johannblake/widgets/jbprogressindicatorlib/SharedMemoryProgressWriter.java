@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Publishes progress into a slot of a memory-mapped file so that a SharedMemoryProgressSource in another process can
+ * display it without any IPC. See SharedMemoryProgressSource for the layout of a slot.
+ * <p/>
+ * Each slot must have a single writer. Writing is cheap enough to be done on every progress update.
+ */
+public class SharedMemoryProgressWriter implements Closeable {
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+
+    private long mSequence;
+
+
+    /**
+     * Maps a slot of a shared progress file for writing. The file is created and grown if necessary.
+     *
+     * @param file      The shared progress file. It must be accessible to the reading process, for example a file in
+     *                  the app's private files directory when both processes belong to the same app.
+     * @param slotIndex The index of the slot to write.
+     * @throws IOException Thrown if the file cannot be created or mapped.
+     */
+    public SharedMemoryProgressWriter(File file, int slotIndex) throws IOException {
+        if (slotIndex < 0)
+            throw new IllegalArgumentException("slotIndex must not be negative: " + slotIndex);
+
+        mFile = new RandomAccessFile(file, "rw");
+
+        try {
+            int offset = slotIndex * SharedMemoryProgressSource.SLOT_SIZE;
+
+            // Mapping beyond the end of the file grows it, so the reader can map the slot as soon as this returns.
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, offset, SharedMemoryProgressSource.SLOT_SIZE);
+            mBuffer.order(ByteOrder.nativeOrder());
+        } catch (IOException ex) {
+            mFile.close();
+            throw ex;
+        }
+
+        // Continue from whatever a previous writer left behind so that readers always see the sequence number change.
+        mSequence = mBuffer.getLong(SharedMemoryProgressSource.OFFSET_SEQUENCE) & ~1L;
+    }
+
+
+    /**
+     * Publishes a new progress value.
+     *
+     * @param value The value in the range used by the progress indicator that displays it.
+     */
+    public void write(double value) {
+        // The fences make sure that readers see the odd sequence number before the value changes and the new value
+        // before the even sequence number. See SharedMemoryProgressSource.memoryFence.
+        mBuffer.putLong(SharedMemoryProgressSource.OFFSET_SEQUENCE, mSequence + 1);
+        SharedMemoryProgressSource.memoryFence();
+        mBuffer.putDouble(SharedMemoryProgressSource.OFFSET_VALUE, value);
+        SharedMemoryProgressSource.memoryFence();
+        mSequence += 2;
+        mBuffer.putLong(SharedMemoryProgressSource.OFFSET_SEQUENCE, mSequence);
+    }
+
+
+    /**
+     * Closes the underlying file. The mapping itself is released once the buffer is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
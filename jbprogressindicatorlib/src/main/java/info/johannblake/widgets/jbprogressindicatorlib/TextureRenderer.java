@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import android.graphics.Canvas;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.TextureView;
+
+import java.util.UUID;
+
+
+/**
+ * Draws a progress indicator into the surface of a TextureView from a dedicated render thread. The thread has its own
+ * looper and Choreographer, so frames are paced by vsync without involving the UI thread. What gets drawn on each
+ * frame is decided by the progress indicator itself. Frames are only requested while the progress indicator has
+ * something new to draw. Once it doesn't, the renderer goes idle until requestFrame is called.
+ */
+final class TextureRenderer implements TextureView.SurfaceTextureListener, Choreographer.FrameCallback {
+    private final String LOG_TAG = "TextureRenderer";
+
+    private final JBProgressIndicator mProgressIndicator;
+
+    private HandlerThread mRenderThread;
+    private Handler mRenderHandler;
+    private volatile boolean mPaused = true;
+
+    // Only written on the render thread.
+    private volatile boolean mFramesRunning;
+
+    // Only accessed on the render thread.
+    private Surface mSurface;
+    private long mLastFrameTimeNanos;
+    private long mPlayTimeNanos;
+
+
+    TextureRenderer(JBProgressIndicator progressIndicator) {
+        mProgressIndicator = progressIndicator;
+    }
+
+
+    /**
+     * Stops or resumes rendering frames. The play time of the animation does not advance while rendering is paused.
+     */
+    void setPaused(boolean paused) {
+        mPaused = paused;
+
+        Handler handler = mRenderHandler;
+
+        if (!paused && (handler != null))
+            handler.post(startFramesRunnable);
+    }
+
+
+    /**
+     * Wakes up the renderer if it has gone idle because nothing changed. Can be called on any thread.
+     */
+    void requestFrame() {
+        Handler handler = mRenderHandler;
+
+        if (!mFramesRunning && !mPaused && (handler != null))
+            handler.post(startFramesRunnable);
+    }
+
+
+    @Override
+    public void onSurfaceTextureAvailable(final SurfaceTexture surfaceTexture, int width, int height) {
+        mRenderThread = new HandlerThread("TextureRenderer_" + UUID.randomUUID());
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper());
+
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface = new Surface(surfaceTexture);
+                mProgressIndicator.invalidateRenderedFrame();
+                startFramesRunnable.run();
+            }
+        });
+    }
+
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surfaceTexture, int width, int height) {
+        mProgressIndicator.invalidateRenderedFrame();
+    }
+
+
+    /**
+     * The surface texture is released on the render thread once it is no longer being drawn into, which is why false
+     * is returned.
+     */
+    @Override
+    public boolean onSurfaceTextureDestroyed(final SurfaceTexture surfaceTexture) {
+        final HandlerThread renderThread = mRenderThread;
+
+        mRenderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(TextureRenderer.this);
+                mFramesRunning = false;
+                mSurface.release();
+                mSurface = null;
+                surfaceTexture.release();
+                renderThread.quit();
+            }
+        });
+
+        mRenderHandler = null;
+        mRenderThread = null;
+
+        return false;
+    }
+
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {
+    }
+
+
+    /**
+     * Renders a frame. Runs on the render thread.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if ((mSurface == null) || mPaused) {
+            mFramesRunning = false;
+            return;
+        }
+
+        if (mLastFrameTimeNanos != 0)
+            mPlayTimeNanos += frameTimeNanos - mLastFrameTimeNanos;
+
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        if (mProgressIndicator.isRenderedFrameStale()) {
+            try {
+                Canvas canvas = mSurface.lockCanvas(null);
+
+                try {
+                    mProgressIndicator.drawFrame(canvas, mPlayTimeNanos);
+                } finally {
+                    mSurface.unlockCanvasAndPost(canvas);
+                }
+            } catch (Exception ex) {
+                Log.e(LOG_TAG, "doFrame: " + ex.toString());
+            }
+        }
+
+        // Go idle if the next frame would look the same. The flag is cleared before checking again, so a change made
+        // on another thread in between either shows up here or makes requestFrame wake the renderer.
+        mFramesRunning = false;
+
+        if (mProgressIndicator.isRenderedFrameStale()) {
+            mFramesRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+
+    /**
+     * Starts requesting frames. Runs on the render thread.
+     */
+    private Runnable startFramesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if ((mSurface == null) || mPaused || mFramesRunning)
+                return;
+
+            // The time spent paused or idle must not count as play time.
+            mFramesRunning = true;
+            mLastFrameTimeNanos = 0;
+
+            Choreographer.getInstance().removeFrameCallback(TextureRenderer.this);
+            Choreographer.getInstance().postFrameCallback(TextureRenderer.this);
+        }
+    };
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Johann Blake
+ *
+ * https://www.linkedin.com/in/johannblake
+ * https://plus.google.com/+JohannBlake
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package info.johannblake.widgets.jbprogressindicatorlib;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MilestoneIndexTest {
+    private final Executor mDirectExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MilestoneIndex mIndex;
+    private List<String> mCalls;
+
+
+    @Before
+    public void setUp() {
+        mIndex = new MilestoneIndex();
+        mCalls = new ArrayList<String>();
+    }
+
+
+    @Test
+    public void risingValueNotifiesCrossedMilestonesInAscendingOrder() {
+        mIndex.add(75, mDirectExecutor, new RecordingListener("c"));
+        mIndex.add(25, mDirectExecutor, new RecordingListener("a"));
+        mIndex.add(50, mDirectExecutor, new RecordingListener("b"));
+
+        mIndex.update(null, 10);
+        assertCalls();
+
+        mIndex.update(null, 60);
+        assertCalls("a 25.0 up", "b 50.0 up");
+
+        mIndex.update(null, 100);
+        assertCalls("c 75.0 up");
+    }
+
+
+    @Test
+    public void fallingValueNotifiesCrossedMilestonesInDescendingOrder() {
+        mIndex.add(25, mDirectExecutor, new RecordingListener("a"));
+        mIndex.add(50, mDirectExecutor, new RecordingListener("b"));
+        mIndex.add(75, mDirectExecutor, new RecordingListener("c"));
+        mIndex.update(null, 100);
+        mCalls.clear();
+
+        mIndex.update(null, 30);
+        assertCalls("c 75.0 down", "b 50.0 down");
+
+        mIndex.update(null, 0);
+        assertCalls("a 25.0 down");
+    }
+
+
+    @Test
+    public void milestoneIsReachedWhenValueEqualsIt() {
+        mIndex.add(50, mDirectExecutor, new RecordingListener("a"));
+
+        mIndex.update(null, 50);
+        assertCalls("a 50.0 up");
+
+        mIndex.update(null, 50);
+        assertCalls();
+
+        mIndex.update(null, 49.9);
+        assertCalls("a 50.0 down");
+    }
+
+
+    @Test
+    public void equalMilestonesAreNotifiedInTheOrderTheyWereAdded() {
+        mIndex.add(50, mDirectExecutor, new RecordingListener("a"));
+        mIndex.add(50, mDirectExecutor, new RecordingListener("b"));
+
+        mIndex.update(null, 50);
+        assertCalls("a 50.0 up", "b 50.0 up");
+
+        mIndex.update(null, 0);
+        assertCalls("b 50.0 down", "a 50.0 down");
+    }
+
+
+    @Test
+    public void milestoneAtOrBelowLastValueCountsAsReached() {
+        mIndex.update(null, 60);
+        mIndex.add(50, mDirectExecutor, new RecordingListener("a"));
+        mIndex.add(60, mDirectExecutor, new RecordingListener("b"));
+        mIndex.add(70, mDirectExecutor, new RecordingListener("c"));
+
+        mIndex.update(null, 80);
+        assertCalls("c 70.0 up");
+
+        mIndex.update(null, 40);
+        assertCalls("c 70.0 down", "b 60.0 down", "a 50.0 down");
+    }
+
+
+    @Test
+    public void removedMilestonesAreNotNotified() {
+        RecordingListener removed = new RecordingListener("b");
+
+        mIndex.add(25, mDirectExecutor, new RecordingListener("a"));
+        mIndex.add(50, mDirectExecutor, removed);
+        mIndex.add(75, mDirectExecutor, removed);
+        mIndex.add(100, mDirectExecutor, new RecordingListener("c"));
+
+        mIndex.update(null, 60);
+        mCalls.clear();
+
+        // One of the removed milestones is below the value and one is above it.
+        mIndex.remove(removed);
+
+        mIndex.update(null, 100);
+        assertCalls("c 100.0 up");
+
+        mIndex.update(null, 0);
+        assertCalls("c 100.0 down", "a 25.0 down");
+    }
+
+
+    private void assertCalls(String... expected) {
+        assertEquals(Arrays.asList(expected), mCalls);
+        mCalls.clear();
+    }
+
+
+    private class RecordingListener implements JBProgressIndicator.OnMilestoneListener {
+        private final String mName;
+
+        RecordingListener(String name) {
+            mName = name;
+        }
+
+        @Override
+        public void onMilestone(JBProgressIndicator progressIndicator, double milestone, boolean increasing) {
+            mCalls.add(mName + " " + milestone + (increasing ? " up" : " down"));
+        }
+    }
+}